@@ -0,0 +1,50 @@
+package org.main.grpc;
+
+import org.main.entity.Block;
+import org.main.grpc.entity.GetBlockChainResponse;
+import org.main.java.grpc.BlockOuterClass;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RpcEntityConverterBenchmark {
+
+    private static final int RESPONSE_BLOCKS = 1000;
+
+    private Block block;
+    private BlockOuterClass.GetBlockChainResponse rpcResponse;
+
+    @Setup
+    public void setUp() {
+        block = new Block(1, "a".repeat(64), "b".repeat(64), 42L, "c".repeat(30));
+        List<BlockOuterClass.Block> rpcBlocks = new ArrayList<>(RESPONSE_BLOCKS);
+        for (int i = 0; i < RESPONSE_BLOCKS; i++) {
+            rpcBlocks.add(RpcEntityConverter.from(new Block(i, "a".repeat(64), "b".repeat(64), (long) i, "c".repeat(30))));
+        }
+        rpcResponse = BlockOuterClass.GetBlockChainResponse.newBuilder()
+                .addAllBlock(rpcBlocks)
+                .build();
+    }
+
+    @Benchmark
+    public Block blockRoundTrip() {
+        return RpcEntityConverter.from(RpcEntityConverter.from(block));
+    }
+
+    @Benchmark
+    public Block blockRoundTripSerialized() throws Exception {
+        byte[] bytes = RpcEntityConverter.from(block).toByteArray();
+        return RpcEntityConverter.from(BlockOuterClass.Block.parseFrom(bytes));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public GetBlockChainResponse getBlockChainResponse() {
+        return RpcEntityConverter.from(rpcResponse);
+    }
+}
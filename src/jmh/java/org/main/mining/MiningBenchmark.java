@@ -0,0 +1,67 @@
+package org.main.mining;
+
+import org.main.BlockGenerationUtils;
+import org.main.entity.Block;
+import org.main.merkle.MerkleTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MiningBenchmark {
+
+    private static final String TEXT = "1" + "0".repeat(64) + BlockGenerationUtils.generateRandomData();
+    /**
+     * Текст того же вида, что майнит {@link BlockGenerationUtils#generateBlock}: индекс, хеш родителя, сложность,
+     * время и корень Меркла
+     */
+    private static final String HEADER_TEXT = "1" + "0".repeat(64) + ':' + BlockGenerationUtils.INITIAL_DIFFICULTY
+            + ':' + 1_700_000_000_000L + ':' + MerkleTree.root(List.of(BlockGenerationUtils.generateRandomData()));
+
+    @Param({"1", "2", "3", "4"})
+    private int difficulty;
+
+    @Param({"1", "4"})
+    private int workers;
+
+    private BlockMiner miner;
+    private PowHasher hasher;
+    private Block prevBlock;
+    private long nonce;
+
+    @Setup
+    public void setUp() {
+        miner = new BlockMiner(workers);
+        hasher = new PowHasher(HEADER_TEXT, BlockGenerationUtils.INITIAL_DIFFICULTY);
+        prevBlock = new Block(0, BlockGenerationUtils.GENESIS_BLOCK_PREV_HASH, "0".repeat(64), 1L, "genesis");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public String calculateHash() {
+        return BlockGenerationUtils.calculateHash(TEXT, ++nonce);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean tryNonce() {
+        return hasher.tryNonce(++nonce);
+    }
+
+    @Benchmark
+    public MiningResult mine() {
+        return miner.mine(TEXT + (++nonce), difficulty, () -> false);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Block generateBlock() {
+        return BlockGenerationUtils.generateBlock(prevBlock, () -> false, miner);
+    }
+}
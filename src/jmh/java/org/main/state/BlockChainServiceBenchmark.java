@@ -0,0 +1,68 @@
+package org.main.state;
+
+import org.main.entity.Block;
+import org.main.exception.ChainValidationException;
+import org.main.mining.MiningConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockChainServiceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int chainLength;
+
+    private BlockChainService blockChainService;
+    private ChainAuditor chainAuditor;
+    private List<Block> chain;
+    private Block nextBlock;
+
+    @Setup
+    public void setUp() {
+        blockChainService = new BlockChainService(false, null);
+        // blocks are spaced by the target interval, so a retarget boundary keeps the difficulty unchanged
+        for (int i = 0; i < chainLength; i++) {
+            blockChainService.addFailSafe(new Block(i, "hash" + (i - 1), "hash" + i, (long) i, "data" + i, timestamp(i)));
+        }
+        chainAuditor = new ChainAuditor(ForkJoinPool.commonPool());
+        chain = blockChainService.getBlockChain(0);
+        nextBlock = new Block(chainLength, "hash" + (chainLength - 1), "hash" + chainLength, (long) chainLength, "data",
+                timestamp(chainLength));
+    }
+
+    private static long timestamp(int index) {
+        return index * MiningConfiguration.DEFAULT_TARGET_BLOCK_INTERVAL_MS;
+    }
+
+    @Benchmark
+    public void validateChains() throws ChainValidationException {
+        blockChainService.validateChains();
+    }
+
+    @Benchmark
+    public AuditResult parallelAudit() {
+        return chainAuditor.audit(chain, false);
+    }
+
+    @Benchmark
+    public boolean add() throws ChainValidationException {
+        boolean added = blockChainService.add(nextBlock);
+        blockChainService.truncate(chainLength); // keeping the chain length stable
+        return added;
+    }
+
+    @Benchmark
+    public List<Block> getBlockChainWhole() {
+        return blockChainService.getBlockChain(0);
+    }
+
+    @Benchmark
+    public List<Block> getBlockChainTail() {
+        return blockChainService.getBlockChain(chainLength - 100L);
+    }
+}
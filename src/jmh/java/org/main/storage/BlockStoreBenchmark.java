@@ -0,0 +1,85 @@
+package org.main.storage;
+
+import org.main.BlockGenerationUtils;
+import org.main.entity.Block;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение хранилищ цепочки: удерживаемая память на блок ({@code bytesPerBlock}), заполнение,
+ * чтение одного блока и копирование хвоста цепочки
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockStoreBenchmark {
+
+    @Param({"HEAP", "COLUMNAR"})
+    private BlockStoreType type;
+
+    @Param({"1000000"})
+    private int chainLength;
+
+    private BlockStore store;
+
+    @Setup
+    public void setUp() {
+        store = newStore(type);
+        fill(store, chainLength);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long bytesPerBlock;
+    }
+
+    /**
+     * Строит хранилище и считает прирост занятой кучи после полной сборки мусора
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public BlockStore retainedMemory(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        BlockStore built = newStore(type);
+        fill(built, chainLength);
+        footprint.bytesPerBlock = (usedHeapAfterGc() - before) / chainLength;
+        return built;
+    }
+
+    @Benchmark
+    public Block getTip() {
+        return store.get(chainLength - 1);
+    }
+
+    @Benchmark
+    public List<Block> snapshotTail() {
+        return List.copyOf(store.snapshot(chainLength - 100, chainLength));
+    }
+
+    private static BlockStore newStore(BlockStoreType type) {
+        return type == BlockStoreType.HEAP ? new HeapBlockStore() : new ColumnarBlockStore();
+    }
+
+    private static void fill(BlockStore store, int chainLength) {
+        String prevHash = BlockGenerationUtils.GENESIS_BLOCK_PREV_HASH;
+        for (int i = 0; i < chainLength; i++) {
+            String hash = BlockGenerationUtils.calculateHash(prevHash, i);
+            store.add(new Block(i, prevHash, hash, i, BlockGenerationUtils.generateRandomData(), i));
+            prevHash = hash;
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
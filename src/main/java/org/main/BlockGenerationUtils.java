@@ -4,6 +4,13 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.jetbrains.annotations.Nullable;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.entity.BlockHeader;
+import org.main.mempool.BlockPayload;
+import org.main.merkle.MerkleTree;
+import org.main.mining.BlockMiner;
+import org.main.mining.MiningResult;
+import org.main.mining.PowHasher;
 
 import java.nio.charset.StandardCharsets;
 import java.util.function.BooleanSupplier;
@@ -12,8 +19,11 @@ public final class BlockGenerationUtils {
     private static final DigestUtils HASH_COMPUTER = new DigestUtils("SHA-256");
 
     private static final int RANDOM_DATA_TEXT_BOUND = 30;
-    private static final int DIFFICULTY = 5;
-    private static final String LAST_SYMBOLS = "0".repeat(DIFFICULTY);
+    /**
+     * Сложность генезиса как ожидаемое число попыток (5 нулевых hex-символов в конце хеша),
+     * с нее начинается пересчет сложности
+     */
+    public static final long INITIAL_DIFFICULTY = 1L << 20;
 
 
     public static final long GENESIS_BLOCK_INDEX = 0L;
@@ -26,47 +36,92 @@ public final class BlockGenerationUtils {
         return RandomStringUtils.randomAlphabetic(RANDOM_DATA_TEXT_BOUND);
     }
 
-    public static Block generateGenesis() {
+    public static Block generateGenesis(BlockMiner miner) {
         System.out.println("Generating genesis block...");
         long index = GENESIS_BLOCK_INDEX;
         String data = BlockGenerationUtils.generateRandomData();
-        String text = index + data;
-
-        String hash;
-        long nonce = 0L;
-        do {
-            hash = calculateHash(text, ++nonce);
-        } while (!isHashMeetsRequirements(hash));
-        return new Block(index, GENESIS_BLOCK_PREV_HASH, hash, nonce, data);
+        long timestamp = System.currentTimeMillis();
+        String text = hashedText(index, null, INITIAL_DIFFICULTY, timestamp, MerkleTree.root(BlockPayload.decode(data)));
+
+        MiningResult result = miner.mine(text, INITIAL_DIFFICULTY, () -> false);
+        miner.reportLastStats();
+        if (result == null) {
+            throw new IllegalStateException("Genesis block mining was interrupted");
+        }
+        return new Block(index, BlockHash.of(GENESIS_BLOCK_PREV_HASH), result.hash(), result.nonce(), data, timestamp, INITIAL_DIFFICULTY);
     }
 
     @Nullable
-    public static Block generateBlock(Block prevBlock, BooleanSupplier stopCondition) {
+    public static Block generateBlock(Block prevBlock, BooleanSupplier stopCondition, BlockMiner miner) {
+        return generateBlock(prevBlock, BlockGenerationUtils.generateRandomData(), prevBlock.getDifficulty(), stopCondition, miner);
+    }
+
+    /**
+     * @param difficulty ожидаемая сложность нового блока, см. {@link org.main.mining.DifficultyRetarget}
+     */
+    @Nullable
+    public static Block generateBlock(Block prevBlock, String data, long difficulty, BooleanSupplier stopCondition, BlockMiner miner) {
         long index = prevBlock.getIndex() + 1;
-        String prevHash = prevBlock.getHash();
-        String data = BlockGenerationUtils.generateRandomData();
-        String text = index + prevHash + data;
-
-        System.out.printf("Mining block with index: [%d]%n", index);
-        String hash;
-        long nonce = 0L;
-        do {
-            if (stopCondition.getAsBoolean()) {
-                return null;
-            }
-            hash = calculateHash(text, ++nonce);
-        } while (!isHashMeetsRequirements(hash));
-        return new Block(index, prevHash, hash, nonce, data);
+        BlockHash prevHash = prevBlock.getBlockHash();
+        long timestamp = System.currentTimeMillis();
+        String text = hashedText(index, prevHash, difficulty, timestamp, MerkleTree.root(BlockPayload.decode(data)));
+
+        System.out.printf("Mining block with index: [%d], difficulty: [%d]%n", index, difficulty);
+        MiningResult result = miner.mine(text, difficulty, stopCondition);
+        miner.reportLastStats();
+        if (result == null) {
+            return null;
+        }
+        return new Block(index, prevHash, result.hash(), result.nonce(), data, timestamp, difficulty);
+    }
+
+    /**
+     * Текст, к которому при майнинге дописывается nonce. Вместо {@code data} в него входит корень Меркла,
+     * поэтому хеш блока подтверждает каждую запись блока. Сложность и время создания тоже входят в текст:
+     * по ним пересчитывается сложность следующих блоков
+     */
+    private static String hashedText(long index, @Nullable BlockHash prevHash, long difficulty, long timestamp, BlockHash merkleRoot) {
+        String header = index == GENESIS_BLOCK_INDEX ? String.valueOf(index) : index + String.valueOf(prevHash);
+        return header + ':' + difficulty + ':' + timestamp + ':' + merkleRoot;
     }
 
-    private static String calculateHash(String basicText, long nonce) {
+    public static String calculateHash(String basicText, long nonce) {
         String dataToHash = basicText + nonce;
         return HASH_COMPUTER.digestAsHex(dataToHash.getBytes(StandardCharsets.UTF_8));
     }
 
-    private static boolean isHashMeetsRequirements(String hash) {
-        String lastSymbols = hash.substring(hash.length() - DIFFICULTY);
-        return LAST_SYMBOLS.equals(lastSymbols);
+    /**
+     * Пересчитывает хеш блока и проверяет, что он совпадает с сохраненным и удовлетворяет сложности блока
+     */
+    public static boolean isBlockHashValid(Block block) {
+        return isHeaderHashValid(BlockHeader.of(block));
+    }
+
+    /**
+     * То же по заголовку, без тела блока. Заголовок без корня Меркла проверить нельзя, он не проходит проверку
+     */
+    public static boolean isHeaderHashValid(BlockHeader header) {
+        if (header.hash() == null || header.merkleRoot() == null) {
+            return false;
+        }
+        String text = hashedText(header.index(), header.prevHash(), header.difficulty(), header.timestamp(),
+                header.merkleRoot());
+        String hash = calculateHash(text, header.nonce());
+        return hash.equals(header.hash().toString()) && isHashMeetsRequirements(header.hash(), header.difficulty());
+    }
+
+    /**
+     * Проверка по сложности генезиса {@link #INITIAL_DIFFICULTY}
+     */
+    public static boolean isHashMeetsRequirements(String hash) {
+        return isHashMeetsRequirements(BlockHash.of(hash), INITIAL_DIFFICULTY);
+    }
+
+    /**
+     * Хеш-строки, которые не являются SHA-256, сложности не удовлетворяют
+     */
+    public static boolean isHashMeetsRequirements(@Nullable BlockHash hash, long difficulty) {
+        return hash != null && hash.isBinary() && PowHasher.meetsDifficulty(hash.word(3), difficulty);
     }
 
 }
@@ -4,7 +4,10 @@ package org.main;
 import org.jetbrains.annotations.NotNull;
 import org.main.grpc.RpcClient;
 import org.main.grpc.RpcServer;
+import org.main.metrics.MetricsRegistry;
+import org.main.metrics.MetricsServer;
 import org.main.state.BlockChainService;
+import org.main.storage.BlockLog;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -26,12 +29,30 @@ public class Main {
 
         RpcClient rpcClient = new RpcClient(nodeName, properties);
 
-        BlockChainService blockchain = new BlockChainService(genesisGeneratorNode, rpcClient);
+        BlockLog blockLog = BlockLog.fromProperties(properties, nodeName);
+        if (blockLog != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> closeBlockLog(blockLog)));
+        }
+
+        BlockChainService blockchain = new BlockChainService(genesisGeneratorNode, rpcClient, properties, blockLog);
         blockchain.start();
 
         int nodePort = Integer.parseInt(properties.getProperty(nodeName).split(":")[1]);
         RpcServer rpcServer = new RpcServer(blockchain, nodePort);
         rpcServer.start();
+
+        MetricsServer metricsServer = MetricsServer.fromProperties(properties, MetricsRegistry.DEFAULT);
+        if (metricsServer != null) {
+            metricsServer.start();
+        }
+    }
+
+    private static void closeBlockLog(BlockLog blockLog) {
+        try {
+            blockLog.close();
+        } catch (IOException e) {
+            System.out.printf("Failed to close block log: [%s]%n", e.getMessage());
+        }
     }
 
     protected static Map<String, String> getNodeName(String[] args) {
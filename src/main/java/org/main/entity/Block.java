@@ -3,30 +3,53 @@ package org.main.entity;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.main.BlockGenerationUtils;
+import org.main.mempool.BlockPayload;
+import org.main.merkle.MerkleTree;
 
 public class Block {
 
     private final long timestamp;
     private final long index;
-    private final String prevHash;
+    private final BlockHash prevHash;
     private final String data;
-    private String hash;
-    private Long nonce;
+    private BlockHash hash;
+    private long nonce;
+    private final long difficulty;
+    private BlockHash merkleRoot; // derived from data on first use
 
     public Block(long index, @Nullable String prevHash, @NotNull String data) {
         this.index = index;
-        this.prevHash = prevHash;
+        this.prevHash = BlockHash.of(prevHash);
         this.data = data;
         this.timestamp = System.currentTimeMillis();
+        this.difficulty = BlockGenerationUtils.INITIAL_DIFFICULTY;
+    }
+
+    public Block(long index, @Nullable String prevHash, @NotNull String hash, long nonce, @NotNull String data) {
+        this(index, BlockHash.of(prevHash), BlockHash.of(hash), nonce, data, System.currentTimeMillis());
+    }
+
+    public Block(long index, @Nullable String prevHash, @Nullable String hash, long nonce, @NotNull String data, long timestamp) {
+        this(index, BlockHash.of(prevHash), BlockHash.of(hash), nonce, data, timestamp);
     }
 
-    public Block(long index, @Nullable String prevHash, @NotNull String hash, @NotNull Long nonce, @NotNull String data) {
+    public Block(long index, @Nullable BlockHash prevHash, @Nullable BlockHash hash, long nonce, @NotNull String data, long timestamp) {
+        this(index, prevHash, hash, nonce, data, timestamp, BlockGenerationUtils.INITIAL_DIFFICULTY);
+    }
+
+    /**
+     * @param difficulty ожидаемое число попыток, которым должен удовлетворять хеш блока
+     */
+    public Block(long index, @Nullable BlockHash prevHash, @Nullable BlockHash hash, long nonce, @NotNull String data, long timestamp,
+                 long difficulty) {
         this.index = index;
         this.prevHash = prevHash;
         this.data = data;
         this.hash = hash;
         this.nonce = nonce;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
+        this.difficulty = difficulty;
     }
 
     public long getTimestamp() {
@@ -38,10 +61,20 @@ public class Block {
     }
 
     public String getPrevHash() {
-        return prevHash;
+        return prevHash == null ? null : prevHash.toString();
     }
 
     public String getHash() {
+        return hash == null ? null : hash.toString();
+    }
+
+    @Nullable
+    public BlockHash getPrevBlockHash() {
+        return prevHash;
+    }
+
+    @Nullable
+    public BlockHash getBlockHash() {
         return hash;
     }
 
@@ -49,10 +82,27 @@ public class Block {
         return data;
     }
 
-    public Long getNonce() {
+    /**
+     * Корень дерева Меркла над записями {@code data}, входит в текст, хеш которого подбирается при майнинге
+     */
+    @NotNull
+    public BlockHash getMerkleRoot() {
+        BlockHash root = merkleRoot;
+        if (root == null) {
+            root = MerkleTree.root(BlockPayload.decode(data));
+            merkleRoot = root; // BlockHash is immutable, a racing thread computes the same value
+        }
+        return root;
+    }
+
+    public long getNonce() {
         return nonce;
     }
 
+    public long getDifficulty() {
+        return difficulty;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
@@ -61,6 +111,7 @@ public class Block {
                 .append("hash", hash)
                 .append("data", data)
                 .append("nonce", nonce)
+                .append("difficulty", difficulty)
                 .toString();
     }
 }
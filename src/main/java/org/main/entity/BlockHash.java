@@ -0,0 +1,177 @@
+package org.main.entity;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Хеш блока. SHA-256 хранится как 32 байта в четырех long, без hex-строки.
+ * Значения, которые не являются hex-записью SHA-256 (например, {@code prevHash} генезиса
+ * или хеши от старых узлов), хранятся как есть в виде строки.
+ */
+public final class BlockHash {
+
+    public static final int LENGTH = 32;
+    private static final int HEX_LENGTH = LENGTH * 2;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // big-endian words of the digest, unused for text hashes
+    private final long word0;
+    private final long word1;
+    private final long word2;
+    private final long word3;
+    @Nullable
+    private final String text;
+
+    private BlockHash(long word0, long word1, long word2, long word3) {
+        this.word0 = word0;
+        this.word1 = word1;
+        this.word2 = word2;
+        this.word3 = word3;
+        this.text = null;
+    }
+
+    private BlockHash(@NotNull String text) {
+        this.word0 = 0;
+        this.word1 = 0;
+        this.word2 = 0;
+        this.word3 = 0;
+        this.text = text;
+    }
+
+    /**
+     * Строка из 64 hex-символов в нижнем регистре хранится в бинарном виде, остальные значения - как строка
+     */
+    @Contract("null -> null; !null -> !null")
+    @Nullable
+    public static BlockHash of(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() != HEX_LENGTH) {
+            return new BlockHash(value);
+        }
+        long[] words = new long[4];
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            int digit = hexDigit(value.charAt(i));
+            if (digit < 0) {
+                return new BlockHash(value);
+            }
+            words[i / 16] = (words[i / 16] << 4) | digit;
+        }
+        return new BlockHash(words[0], words[1], words[2], words[3]);
+    }
+
+    @NotNull
+    public static BlockHash of(@NotNull byte[] bytes) {
+        Validate.isTrue(bytes.length == LENGTH, "Hash should be %d bytes long: %d", LENGTH, bytes.length);
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    @NotNull
+    public static BlockHash of(long word0, long word1, long word2, long word3) {
+        return new BlockHash(word0, word1, word2, word3);
+    }
+
+    @NotNull
+    public static BlockHash read(@NotNull ByteBuffer buffer) {
+        return new BlockHash(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    public boolean isBinary() {
+        return text == null;
+    }
+
+    /**
+     * Сырые 32 байта хеша, только для {@link #isBinary()}
+     */
+    @NotNull
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        write(buffer);
+        return buffer.array();
+    }
+
+    public void write(@NotNull ByteBuffer buffer) {
+        Validate.validState(isBinary(), "Text hash has no binary form: %s", text);
+        buffer.putLong(word0).putLong(word1).putLong(word2).putLong(word3);
+    }
+
+    /**
+     * Первые 8 байт хеша, только для {@link #isBinary()}
+     */
+    public long prefix() {
+        return word0;
+    }
+
+    /**
+     * {@code i}-е 8-байтное слово хеша в порядке big-endian, только для {@link #isBinary()}
+     */
+    public long word(int i) {
+        return switch (i) {
+            case 0 -> word0;
+            case 1 -> word1;
+            case 2 -> word2;
+            case 3 -> word3;
+            default -> throw new IndexOutOfBoundsException(i);
+        };
+    }
+
+    /**
+     * Hex-запись для бинарного хеша или исходная строка
+     */
+    @Override
+    public String toString() {
+        if (text != null) {
+            return text;
+        }
+        char[] chars = new char[HEX_LENGTH];
+        appendHex(chars, 0, word0);
+        appendHex(chars, 16, word1);
+        appendHex(chars, 32, word2);
+        appendHex(chars, 48, word3);
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlockHash other)) {
+            return false;
+        }
+        if (text != null || other.text != null) {
+            return text != null && text.equals(other.text);
+        }
+        return word0 == other.word0 && word1 == other.word1 && word2 == other.word2 && word3 == other.word3;
+    }
+
+    @Override
+    public int hashCode() {
+        if (text != null) {
+            return text.hashCode();
+        }
+        return Long.hashCode(word0 ^ word1 ^ word2 ^ word3);
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1; // upper case is kept as text, so that toString() returns exactly the same value
+    }
+
+    private static void appendHex(char[] chars, int offset, long word) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX_DIGITS[(int) (word & 0xF)];
+            word >>>= 4;
+        }
+    }
+}
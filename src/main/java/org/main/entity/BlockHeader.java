@@ -0,0 +1,35 @@
+package org.main.entity;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Заголовок блока: все поля, кроме {@code data}, и корень дерева Меркла вместо нее
+ *
+ * @param merkleRoot {@code null}, если узел, отдавший заголовок, его не прислал; такой заголовок не проходит
+ *                   проверку хеша и при синхронизации не принимается
+ */
+public record BlockHeader(long index, @Nullable BlockHash prevHash, @Nullable BlockHash hash, long nonce, long timestamp,
+                          @Nullable BlockHash merkleRoot, long difficulty) {
+
+    @NotNull
+    public static BlockHeader of(@NotNull Block block) {
+        return new BlockHeader(block.getIndex(), block.getPrevBlockHash(), block.getBlockHash(), block.getNonce(),
+                block.getTimestamp(), block.getMerkleRoot(), block.getDifficulty());
+    }
+
+    /**
+     * Совпадает ли тело блока с заголовком
+     */
+    public boolean matches(@NotNull Block block) {
+        return index == block.getIndex()
+                && nonce == block.getNonce()
+                && timestamp == block.getTimestamp()
+                && difficulty == block.getDifficulty()
+                && Objects.equals(prevHash, block.getPrevBlockHash())
+                && Objects.equals(hash, block.getBlockHash())
+                && Objects.equals(merkleRoot, block.getMerkleRoot());
+    }
+}
@@ -0,0 +1,14 @@
+package org.main.exception;
+
+public class GossipUnavailableException extends Exception {
+
+    private static final String GOSSIP_UNAVAILABLE_TEMPLATE = "Gossip stream to node [%s] is not available";
+
+    public GossipUnavailableException(String host) {
+        super(String.format(GOSSIP_UNAVAILABLE_TEMPLATE, host));
+    }
+
+    public GossipUnavailableException(String host, Throwable cause) {
+        super(String.format(GOSSIP_UNAVAILABLE_TEMPLATE, host), cause);
+    }
+}
@@ -0,0 +1,82 @@
+package org.main.grpc;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Channel;
+import io.grpc.Status;
+import org.jetbrains.annotations.NotNull;
+import org.main.exception.GossipUnavailableException;
+import org.main.metrics.NodeMetrics;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Вызовы к узлам через gossip-потоки с переходом на unary-вызов, если поток к узлу недоступен
+ */
+final class GossipClient {
+
+    private final Map<String, GossipPeer> peers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gossip-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long retryMillis;
+
+    GossipClient(long retryMillis) {
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * Время запроса вместе с ожиданием ответа из потока и unary-вызовом и код его итоговой ошибки записываются
+     * в {@link NodeMetrics#RPC_CLIENT_SECONDS} и {@link NodeMetrics#RPC_CLIENT_ERRORS} с меткой {@code method}:
+     * сам поток интерсептор не измеряет
+     *
+     * @param method     метка метода в метриках
+     * @param gossipCall запрос через поток узла
+     * @param unaryCall  запрос, если поток недоступен
+     * @param deadlineMillis ограничение на ответ через поток, после него поток сбрасывается
+     */
+    @NotNull
+    <T> ListenableFuture<T> call(@NotNull Channel channel,
+                                 @NotNull String method,
+                                 @NotNull Function<GossipPeer, ListenableFuture<T>> gossipCall,
+                                 @NotNull Supplier<ListenableFuture<T>> unaryCall,
+                                 long deadlineMillis) {
+        long startNanos = System.nanoTime();
+        String host = channel.authority();
+        GossipPeer peer = peers.computeIfAbsent(host, ignored -> new GossipPeer(channel, retryMillis));
+        ListenableFuture<T> gossipResult = Futures.withTimeout(gossipCall.apply(peer), deadlineMillis, TimeUnit.MILLISECONDS, timer);
+        // a stream without a response is stuck: it is dropped so that the next calls don't wait for it too
+        ListenableFuture<T> resetOnTimeout = Futures.catchingAsync(gossipResult, TimeoutException.class, e -> {
+            peer.reset(e);
+            return Futures.immediateFailedFuture(new GossipUnavailableException(host, e));
+        }, MoreExecutors.directExecutor());
+        ListenableFuture<T> result = Futures.catchingAsync(resetOnTimeout, GossipUnavailableException.class,
+                e -> unaryCall.get(), MoreExecutors.directExecutor());
+        Futures.addCallback(result, new FutureCallback<>() {
+            @Override
+            public void onSuccess(T value) {
+                NodeMetrics.RPC_CLIENT_SECONDS.labels(host, method).observeSince(startNanos);
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+                NodeMetrics.RPC_CLIENT_SECONDS.labels(host, method).observeSince(startNanos);
+                Status.Code code = t instanceof CancellationException ? Status.Code.CANCELLED : Status.fromThrowable(t).getCode();
+                NodeMetrics.RPC_CLIENT_ERRORS.labels(host, method, code.name()).inc();
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+}
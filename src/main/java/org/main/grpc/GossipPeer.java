@@ -0,0 +1,226 @@
+package org.main.grpc;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.Empty;
+import io.grpc.Channel;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.jetbrains.annotations.NotNull;
+import org.main.exception.GossipUnavailableException;
+import org.main.java.grpc.BlockOuterClass;
+import org.main.java.grpc.BlockServiceGrpc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Долгоживущий gossip-поток к одному узлу. Блоки встают в очередь и отправляются пачками, пока поток готов
+ * принимать данные: под нагрузкой в одну пачку попадает все, что накопилось за время ожидания.
+ * Если поток оборвался или узел его не поддерживает, ожидающие запросы завершаются
+ * {@link GossipUnavailableException}, и новый поток открывается не раньше, чем через {@code retryMillis}.
+ */
+final class GossipPeer {
+
+    static final int MAX_BATCH_SIZE = 64;
+
+    private final Channel channel;
+    private final long retryNanos;
+
+    private ClientCallStreamObserver<BlockOuterClass.GossipMessage> requestStream; // null when there is no open stream
+    private final Queue<Announcement> queue = new ArrayDeque<>();
+    private final Map<Long, List<SettableFuture<BlockOuterClass.ResponseCode>>> pendingAcks = new HashMap<>();
+    private final Map<Long, SettableFuture<BlockOuterClass.HeartbeatResponse>> pendingHeartbeats = new HashMap<>();
+    private long nextSequence;
+    private long retryAfterNanos;
+
+    GossipPeer(@NotNull Channel channel, long retryMillis) {
+        this.channel = channel;
+        this.retryNanos = TimeUnit.MILLISECONDS.toNanos(retryMillis);
+        this.retryAfterNanos = System.nanoTime();
+    }
+
+    @NotNull
+    synchronized ListenableFuture<BlockOuterClass.ResponseCode> announce(@NotNull BlockOuterClass.Block block) {
+        SettableFuture<BlockOuterClass.ResponseCode> result = SettableFuture.create();
+        if (!ensureOpen()) {
+            result.setException(new GossipUnavailableException(channel.authority()));
+            return result;
+        }
+        queue.add(new Announcement(block, result));
+        flush();
+        return result;
+    }
+
+    /**
+     * Объявляет блок без тела, узел отвечает {@link BlockOuterClass.ResponseCode#ACCEPTED}, если тело ему нужно
+     */
+    @NotNull
+    synchronized ListenableFuture<BlockOuterClass.ResponseCode> offer(@NotNull BlockOuterClass.BlockAnnouncement announcement) {
+        SettableFuture<BlockOuterClass.ResponseCode> result = SettableFuture.create();
+        if (!ensureOpen()) {
+            result.setException(new GossipUnavailableException(channel.authority()));
+            return result;
+        }
+        long sequence = nextSequence++;
+        pendingAcks.put(sequence, List.of(result));
+        requestStream.onNext(BlockOuterClass.GossipMessage.newBuilder()
+                .setSequence(sequence)
+                .setAnnouncement(announcement)
+                .build());
+        return result;
+    }
+
+    @NotNull
+    synchronized ListenableFuture<BlockOuterClass.HeartbeatResponse> heartbeat() {
+        SettableFuture<BlockOuterClass.HeartbeatResponse> result = SettableFuture.create();
+        if (!ensureOpen()) {
+            result.setException(new GossipUnavailableException(channel.authority()));
+            return result;
+        }
+        long sequence = nextSequence++;
+        pendingHeartbeats.put(sequence, result);
+        requestStream.onNext(BlockOuterClass.GossipMessage.newBuilder()
+                .setSequence(sequence)
+                .setHeartbeatRequest(Empty.getDefaultInstance())
+                .build());
+        return result;
+    }
+
+    synchronized void close() {
+        if (requestStream != null) {
+            requestStream.onCompleted();
+            closed(requestStream, new GossipUnavailableException(channel.authority()));
+        }
+    }
+
+    /**
+     * Отменяет поток, на котором запрос не дождался ответа: ожидающие запросы завершаются ошибкой,
+     * и до повторной попытки вызовы идут через unary
+     */
+    synchronized void reset(@NotNull Throwable cause) {
+        if (requestStream != null) {
+            ClientCallStreamObserver<BlockOuterClass.GossipMessage> stream = requestStream;
+            System.out.printf("Gossip stream to node: [%s] doesn't respond, resetting it%n", channel.authority());
+            closed(stream, new GossipUnavailableException(channel.authority(), cause));
+            stream.cancel("Gossip request timed out", cause);
+        }
+    }
+
+    private boolean ensureOpen() {
+        if (requestStream != null) {
+            return true;
+        }
+        if (System.nanoTime() - retryAfterNanos < 0) {
+            return false;
+        }
+        BlockServiceGrpc.newStub(channel).gossip(new ResponseObserver());
+        return true; // requestStream is set in beforeStart
+    }
+
+    /**
+     * Отправляет накопленные блоки пачками, пока поток готов
+     */
+    private void flush() {
+        while (requestStream != null && !queue.isEmpty() && requestStream.isReady()) {
+            BlockOuterClass.BlockBatch.Builder batch = BlockOuterClass.BlockBatch.newBuilder();
+            List<SettableFuture<BlockOuterClass.ResponseCode>> results = new ArrayList<>();
+            while (!queue.isEmpty() && results.size() < MAX_BATCH_SIZE) {
+                Announcement announcement = queue.poll();
+                batch.addBlock(announcement.block());
+                results.add(announcement.result());
+            }
+            long sequence = nextSequence++;
+            pendingAcks.put(sequence, results);
+            requestStream.onNext(BlockOuterClass.GossipMessage.newBuilder()
+                    .setSequence(sequence)
+                    .setBlocks(batch)
+                    .build());
+        }
+    }
+
+    private synchronized void onMessage(BlockOuterClass.GossipMessage message) {
+        switch (message.getPayloadCase()) {
+            case ACK -> {
+                List<SettableFuture<BlockOuterClass.ResponseCode>> results = pendingAcks.remove(message.getSequence());
+                if (results == null) {
+                    return;
+                }
+                List<BlockOuterClass.ResponseCode> codes = message.getAck().getCodeList();
+                for (int i = 0; i < results.size(); i++) {
+                    results.get(i).set(i < codes.size() ? codes.get(i) : BlockOuterClass.ResponseCode.FAILED);
+                }
+            }
+            case HEARTBEAT -> {
+                SettableFuture<BlockOuterClass.HeartbeatResponse> result = pendingHeartbeats.remove(message.getSequence());
+                if (result != null) {
+                    result.set(message.getHeartbeat());
+                }
+            }
+            default -> System.out.printf("Unexpected gossip message from node: [%s]: [%s]%n",
+                    channel.authority(), message.getPayloadCase());
+        }
+    }
+
+    /**
+     * Поток закрыт: все ожидающие запросы завершаются ошибкой, чтобы вызывающий перешел на unary-вызовы
+     */
+    private synchronized void closed(ClientCallStreamObserver<BlockOuterClass.GossipMessage> stream, Throwable cause) {
+        if (requestStream != stream) {
+            return; // already handled
+        }
+        requestStream = null;
+        retryAfterNanos = System.nanoTime() + retryNanos;
+        GossipUnavailableException exception = cause instanceof GossipUnavailableException unavailable
+                ? unavailable
+                : new GossipUnavailableException(channel.authority(), cause);
+        queue.forEach(announcement -> announcement.result().setException(exception));
+        queue.clear();
+        pendingAcks.values().forEach(results -> results.forEach(result -> result.setException(exception)));
+        pendingAcks.clear();
+        pendingHeartbeats.values().forEach(result -> result.setException(exception));
+        pendingHeartbeats.clear();
+    }
+
+    private record Announcement(BlockOuterClass.Block block, SettableFuture<BlockOuterClass.ResponseCode> result) {
+    }
+
+    private class ResponseObserver implements ClientResponseObserver<BlockOuterClass.GossipMessage, BlockOuterClass.GossipMessage> {
+
+        private ClientCallStreamObserver<BlockOuterClass.GossipMessage> stream;
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<BlockOuterClass.GossipMessage> stream) {
+            this.stream = stream;
+            requestStream = stream; // called synchronously from gossip(), under the peer monitor
+            stream.setOnReadyHandler(() -> {
+                synchronized (GossipPeer.this) {
+                    if (requestStream == stream) {
+                        flush();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onNext(BlockOuterClass.GossipMessage message) {
+            onMessage(message);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            System.out.printf("Gossip stream to node: [%s] is closed: %s%n", channel.authority(), t.getMessage());
+            closed(stream, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            closed(stream, new GossipUnavailableException(channel.authority()));
+        }
+    }
+}
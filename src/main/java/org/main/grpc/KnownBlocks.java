@@ -0,0 +1,45 @@
+package org.main.grpc;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.BlockHash;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хеши блоков, которые уже есть у каждого узла: узел сам объявил блок или ответил на него.
+ * Такие блоки узлу повторно не отправляются. Для каждого узла хранятся последние {@code capacityPerPeer} хешей
+ */
+final class KnownBlocks {
+
+    private final int capacityPerPeer;
+    private final Map<String, Set<BlockHash>> byPeer = new ConcurrentHashMap<>();
+
+    KnownBlocks(int capacityPerPeer) {
+        this.capacityPerPeer = capacityPerPeer;
+    }
+
+    void add(@NotNull String host, @Nullable BlockHash hash) {
+        if (hash != null) {
+            byPeer.computeIfAbsent(host, key -> newBoundedSet()).add(hash);
+        }
+    }
+
+    boolean contains(@NotNull String host, @Nullable BlockHash hash) {
+        Set<BlockHash> known = byPeer.get(host);
+        return hash != null && known != null && known.contains(hash);
+    }
+
+    private Set<BlockHash> newBoundedSet() {
+        return Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BlockHash, Boolean> eldest) {
+                return size() > capacityPerPeer;
+            }
+        }));
+    }
+}
@@ -0,0 +1,108 @@
+package org.main.grpc;
+
+import io.grpc.Context;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.java.grpc.BlockServiceGrpc;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Делит диапазон индексов на отрезки и загружает их параллельно с нескольких узлов. Отрезок загружается
+ * с узла, чья цепочка его покрывает; при ошибке или таймауте узел исключается, а отрезок повторяется на следующем.
+ * Отрезки отдаются получателю строго по порядку, одновременно загружается не больше
+ * {@code rangesInFlightPerPeer} отрезков на узел.
+ */
+final class ParallelRangeFetcher {
+
+    @FunctionalInterface
+    interface RangeLoader<T> {
+        /**
+         * @return элементы {@code [fromIndex, toIndex)}
+         */
+        @NotNull
+        List<T> load(@NotNull BlockServiceGrpc.BlockServiceBlockingStub stub, long fromIndex, long toIndex) throws Exception;
+    }
+
+    record Peer(BlockServiceGrpc.BlockServiceBlockingStub stub, long chainLength) {
+    }
+
+    private final Executor executor;
+    private final int rangeSize;
+    private final int rangesInFlightPerPeer;
+
+    ParallelRangeFetcher(@NotNull Executor executor, int rangeSize, int rangesInFlightPerPeer) {
+        this.executor = executor;
+        this.rangeSize = rangeSize;
+        this.rangesInFlightPerPeer = rangesInFlightPerPeer;
+    }
+
+    /**
+     * @param consumer получает отрезки по порядку, {@code false} прерывает загрузку
+     * @return {@code false}, если какой-то отрезок не удалось загрузить ни с одного узла
+     */
+    <T> boolean fetch(@NotNull List<Peer> peers, long fromIndex, long toIndex,
+                      @NotNull RangeLoader<T> loader, @NotNull Predicate<List<T>> consumer) {
+        Set<BlockServiceGrpc.BlockServiceBlockingStub> failedPeers = ConcurrentHashMap.newKeySet();
+        Context.CancellableContext context = Context.current().withCancellation();
+        Executor contextExecutor = context.fixedContextExecutor(executor);
+        Deque<CompletableFuture<List<T>>> inFlight = new ArrayDeque<>();
+        int window = Math.max(1, peers.size() * rangesInFlightPerPeer);
+        long nextFrom = fromIndex;
+        int rangeNumber = 0;
+        try {
+            while (nextFrom < toIndex || !inFlight.isEmpty()) {
+                while (nextFrom < toIndex && inFlight.size() < window) {
+                    long from = nextFrom;
+                    long to = Math.min(from + rangeSize, toIndex);
+                    int number = rangeNumber++;
+                    inFlight.add(CompletableFuture.supplyAsync(
+                            () -> loadWithRetries(peers, failedPeers, number, from, to, loader), contextExecutor));
+                    nextFrom = to;
+                }
+                List<T> range = inFlight.poll().join();
+                if (range == null || !consumer.test(range)) {
+                    return range != null;
+                }
+            }
+            return true;
+        } finally {
+            context.cancel(null); // stops the calls for ranges that are no longer needed
+        }
+    }
+
+    @Nullable
+    private <T> List<T> loadWithRetries(List<Peer> peers, Set<BlockServiceGrpc.BlockServiceBlockingStub> failedPeers,
+                                        int rangeNumber, long fromIndex, long toIndex, RangeLoader<T> loader) {
+        List<Peer> candidates = peers.stream()
+                .filter(peer -> peer.chainLength() >= toIndex)
+                .toList();
+        for (int attempt = 0; attempt < candidates.size(); attempt++) {
+            Peer peer = candidates.get((rangeNumber + attempt) % candidates.size());
+            if (failedPeers.contains(peer.stub()) || Context.current().isCancelled()) {
+                continue;
+            }
+            String host = peer.stub().getChannel().authority();
+            try {
+                List<T> range = loader.load(peer.stub(), fromIndex, toIndex);
+                if (range.size() == toIndex - fromIndex) {
+                    return range;
+                }
+                System.out.printf("Node: [%s] returned [%d] of [%d] items for range [%d, %d)%n",
+                        host, range.size(), toIndex - fromIndex, fromIndex, toIndex);
+            } catch (Exception e) {
+                System.out.printf("Failed to load range [%d, %d) from node: [%s]: %s%n", fromIndex, toIndex, host, e.getMessage());
+            }
+            failedPeers.add(peer.stub());
+        }
+        System.out.printf("Range [%d, %d) is not available on any node%n", fromIndex, toIndex);
+        return null;
+    }
+}
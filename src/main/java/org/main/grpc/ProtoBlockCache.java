@@ -0,0 +1,64 @@
+package org.main.grpc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.java.grpc.BlockOuterClass;
+import org.main.state.ChainListener;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный по размеру кеш готовых protobuf-сообщений блоков по индексу. Блоки после добавления
+ * не меняются, поэтому при раздаче цепочки нескольким узлам каждый блок конвертируется один раз.
+ * Запись сверяется с хешем блока, так что после переключения ветки старое сообщение не отдается,
+ * даже если удаление из кеша еще не дошло. Такая запись считается промахом.
+ */
+final class ProtoBlockCache implements ChainListener {
+
+    private final Cache<Long, CachedBlock> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    ProtoBlockCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    @NotNull
+    BlockOuterClass.Block get(@NotNull Block block) {
+        CachedBlock cached = cache.getIfPresent(block.getIndex());
+        if (cached != null && Objects.equals(cached.hash(), block.getBlockHash())) {
+            hits.increment();
+            return cached.proto();
+        }
+        misses.increment();
+        BlockOuterClass.Block proto = RpcEntityConverter.from(block);
+        cache.put(block.getIndex(), new CachedBlock(block.getBlockHash(), proto));
+        return proto;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    @Override
+    public void onTruncated(long fromIndex) {
+        cache.asMap().keySet().removeIf(index -> index >= fromIndex);
+    }
+
+    private record CachedBlock(BlockHash hash, BlockOuterClass.Block proto) {
+    }
+}
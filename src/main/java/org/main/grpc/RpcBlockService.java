@@ -1,20 +1,35 @@
 package org.main.grpc;
 
 import com.google.protobuf.Empty;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import org.main.entity.Block;
+import org.main.entity.BlockHeader;
 import org.main.grpc.entity.MinedBlockRequest;
 import org.main.java.grpc.BlockOuterClass;
 import org.main.java.grpc.BlockServiceGrpc;
+import org.main.mempool.SubmitResult;
+import org.main.merkle.InclusionProof;
+import org.main.metrics.MetricsRegistry;
 import org.main.state.BlockChainService;
 
 import java.util.List;
+import java.util.function.Function;
 
 public class RpcBlockService extends BlockServiceGrpc.BlockServiceImplBase {
 
     private final BlockChainService blockChainService;
+    private final ProtoBlockCache protoBlockCache = new ProtoBlockCache(RpcConfiguration.PROTO_BLOCK_CACHE_SIZE);
 
     public RpcBlockService(BlockChainService blockChainService) {
         this.blockChainService = blockChainService;
+        blockChainService.addListener(protoBlockCache);
+        MetricsRegistry.DEFAULT.counterFunction("node_proto_block_cache_hits_total",
+                "Blocks served from the protobuf block cache", protoBlockCache::hits);
+        MetricsRegistry.DEFAULT.counterFunction("node_proto_block_cache_misses_total",
+                "Blocks converted to protobuf because they were not cached", protoBlockCache::misses);
+        MetricsRegistry.DEFAULT.gaugeFunction("node_proto_block_cache_size",
+                "Blocks in the protobuf block cache", protoBlockCache::size);
     }
 
     @Override
@@ -35,6 +50,36 @@ public class RpcBlockService extends BlockServiceGrpc.BlockServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    @Override
+    public void announceBlock(BlockOuterClass.BlockAnnouncement request, StreamObserver<BlockOuterClass.AnnouncementResponse> responseObserver) {
+        boolean wanted = blockChainService.onBlockAnnounced(RpcEntityConverter.from(request));
+        responseObserver.onNext(BlockOuterClass.AnnouncementResponse.newBuilder()
+                .setWanted(wanted)
+                .build());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getBlockByHash(BlockOuterClass.GetBlockByHashRequest request, StreamObserver<BlockOuterClass.GetBlockResponse> responseObserver) {
+        Block block = blockChainService.getBlockByHash(RpcEntityConverter.from(request));
+        responseObserver.onNext(RpcEntityConverter.toBlockResponse(block));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getBlockByIndex(BlockOuterClass.GetBlockByIndexRequest request, StreamObserver<BlockOuterClass.GetBlockResponse> responseObserver) {
+        Block block = blockChainService.getBlockByIndex(request.getIndex());
+        responseObserver.onNext(RpcEntityConverter.toBlockResponse(block));
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getInclusionProof(BlockOuterClass.InclusionProofRequest request, StreamObserver<BlockOuterClass.InclusionProofResponse> responseObserver) {
+        InclusionProof proof = blockChainService.getInclusionProof(request.getBlockIndex(), request.getEntry());
+        responseObserver.onNext(RpcEntityConverter.toInclusionProofResponse(proof));
+        responseObserver.onCompleted();
+    }
+
     @Override
     public void sendHeartbeat(Empty request, StreamObserver<BlockOuterClass.HeartbeatResponse> responseObserver) {
         BlockOuterClass.HeartbeatResponse response = BlockOuterClass.HeartbeatResponse.newBuilder()
@@ -44,10 +89,100 @@ public class RpcBlockService extends BlockServiceGrpc.BlockServiceImplBase {
         responseObserver.onCompleted();
     }
 
+    /**
+     * Долгоживущий поток от другого узла: на пачку блоков отвечает подтверждением с кодом для каждого блока,
+     * на объявление блока - {@code ACCEPTED}, если нужно тело, на heartbeat - длиной цепочки
+     */
+    @Override
+    public StreamObserver<BlockOuterClass.GossipMessage> gossip(StreamObserver<BlockOuterClass.GossipMessage> responseObserver) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(BlockOuterClass.GossipMessage message) {
+                BlockOuterClass.GossipMessage.Builder reply = BlockOuterClass.GossipMessage.newBuilder()
+                        .setSequence(message.getSequence());
+                switch (message.getPayloadCase()) {
+                    case BLOCKS -> {
+                        BlockOuterClass.GossipAck.Builder ack = BlockOuterClass.GossipAck.newBuilder();
+                        for (BlockOuterClass.Block rpcBlock : message.getBlocks().getBlockList()) {
+                            ack.addCode(receiveGossipBlock(rpcBlock));
+                        }
+                        reply.setAck(ack);
+                    }
+                    case ANNOUNCEMENT -> reply.setAck(BlockOuterClass.GossipAck.newBuilder()
+                            .addCode(blockChainService.onBlockAnnounced(RpcEntityConverter.from(message.getAnnouncement()))
+                                    ? BlockOuterClass.ResponseCode.ACCEPTED
+                                    : BlockOuterClass.ResponseCode.REJECTED));
+                    case HEARTBEAT_REQUEST -> reply.setHeartbeat(BlockOuterClass.HeartbeatResponse.newBuilder()
+                            .setChainLength(blockChainService.chainSize()));
+                    default -> {
+                        System.out.printf("Unexpected gossip message: [%s]%n", message.getPayloadCase());
+                        return;
+                    }
+                }
+                responseObserver.onNext(reply.build());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.out.printf("Gossip stream is closed by peer: %s%n", t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    /**
+     * Поток пачек записей для мемпула от клиента. Каждая пачка принимается сразу, итог отправляется,
+     * когда клиент закрывает поток
+     */
+    @Override
+    public StreamObserver<BlockOuterClass.TransactionBatch> submitTransactions(StreamObserver<BlockOuterClass.SubmitTransactionsResponse> responseObserver) {
+        return new StreamObserver<>() {
+            private SubmitResult total = SubmitResult.EMPTY;
+
+            @Override
+            public void onNext(BlockOuterClass.TransactionBatch batch) {
+                total = total.plus(blockChainService.submitEntries(batch.getEntryList()));
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                System.out.printf("Transaction stream is closed by client after [%d] accepted entries: %s%n",
+                        total.accepted(), t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                System.out.printf("Transaction stream is completed: [%s]%n", total);
+                responseObserver.onNext(BlockOuterClass.SubmitTransactionsResponse.newBuilder()
+                        .setAccepted(total.accepted())
+                        .setDuplicates(total.duplicates())
+                        .setRejected(total.rejected())
+                        .build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    private BlockOuterClass.ResponseCode receiveGossipBlock(BlockOuterClass.Block rpcBlock) {
+        MinedBlockRequest request = new MinedBlockRequest(RpcEntityConverter.from(rpcBlock));
+        System.out.println("Received gossip block with index: [" + request.block().getIndex() + "]");
+        try {
+            return blockChainService.onBlockRequestReceived(request)
+                    ? BlockOuterClass.ResponseCode.ACCEPTED
+                    : BlockOuterClass.ResponseCode.REJECTED;
+        } catch (RuntimeException e) {
+            return BlockOuterClass.ResponseCode.FAILED; // the unary call fails the same way, the stream is kept
+        }
+    }
+
     @Override
     public void getBlockchain(BlockOuterClass.GetBlockChainRequest request, StreamObserver<BlockOuterClass.GetBlockChainResponse> responseObserver) {
         List<BlockOuterClass.Block> rpcBlocks = blockChainService.getBlockChain(request.getFromIndex()).stream()
-                .map(RpcEntityConverter::from)
+                .map(protoBlockCache::get)
                 .toList();
         BlockOuterClass.GetBlockChainResponse response = BlockOuterClass.GetBlockChainResponse.newBuilder()
                 .addAllBlock(rpcBlocks)
@@ -55,4 +190,94 @@ public class RpcBlockService extends BlockServiceGrpc.BlockServiceImplBase {
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
+
+    /**
+     * Отдает цепочку от {@code from_index} до {@code to_index} или длины цепочки на момент запроса
+     * сообщениями по {@code chunk_size} блоков.
+     * Следующая порция готовится, только когда транспорт готов ее принять, поэтому в памяти не больше одной порции
+     */
+    @Override
+    public void streamBlockchain(BlockOuterClass.GetBlockChainRequest request, StreamObserver<BlockOuterClass.GetBlockChainResponse> responseObserver) {
+        stream(request, responseObserver, chunk -> {
+            BlockOuterClass.GetBlockChainResponse.Builder response = BlockOuterClass.GetBlockChainResponse.newBuilder();
+            chunk.forEach(block -> response.addBlock(protoBlockCache.get(block)));
+            return response.build();
+        });
+    }
+
+    /**
+     * Как {@link #streamBlockchain}, но только заголовки блоков без {@code data}
+     */
+    @Override
+    public void getHeaders(BlockOuterClass.GetBlockChainRequest request, StreamObserver<BlockOuterClass.GetHeadersResponse> responseObserver) {
+        stream(request, responseObserver, chunk -> {
+            BlockOuterClass.GetHeadersResponse.Builder response = BlockOuterClass.GetHeadersResponse.newBuilder();
+            chunk.forEach(block -> response.addHeader(RpcEntityConverter.from(BlockHeader.of(block))));
+            return response.build();
+        });
+    }
+
+    private <R> void stream(BlockOuterClass.GetBlockChainRequest request, StreamObserver<R> responseObserver,
+                            Function<List<Block>, R> toResponse) {
+        int chunkSize = request.getChunkSize() > 0
+                ? Math.min(request.getChunkSize(), RpcConfiguration.MAX_SYNC_CHUNK_SIZE)
+                : RpcConfiguration.DEFAULT_SYNC_CHUNK_SIZE;
+        long chainSize = blockChainService.chainSize();
+        long toIndex = request.getToIndex() > 0 ? Math.min(request.getToIndex(), chainSize) : chainSize;
+        ChainStreamer<R> streamer = new ChainStreamer<>(responseObserver, toResponse, request.getFromIndex(), toIndex, chunkSize);
+        if (responseObserver instanceof ServerCallStreamObserver<R> serverObserver) {
+            serverObserver.setOnCancelHandler(streamer::cancel);
+            serverObserver.setOnReadyHandler(streamer::drain);
+        }
+        streamer.drain();
+    }
+
+    private class ChainStreamer<R> {
+        private final StreamObserver<R> responseObserver;
+        private final Function<List<Block>, R> toResponse;
+        private final long toIndex;
+        private final int chunkSize;
+        private long nextIndex;
+        private boolean finished;
+
+        private ChainStreamer(StreamObserver<R> responseObserver, Function<List<Block>, R> toResponse,
+                              long fromIndex, long toIndex, int chunkSize) {
+            this.responseObserver = responseObserver;
+            this.toResponse = toResponse;
+            this.nextIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.chunkSize = chunkSize;
+        }
+
+        private synchronized void drain() {
+            while (!finished && isReady()) {
+                if (nextIndex >= toIndex) {
+                    finished = true;
+                    responseObserver.onCompleted();
+                    System.out.printf("Blockchain stream finished at index: [%d]; block cache hits: [%d], misses: [%d]%n",
+                            nextIndex, protoBlockCache.hits(), protoBlockCache.misses());
+                    return;
+                }
+                long chunkEnd = Math.min(nextIndex + chunkSize, toIndex);
+                List<Block> chunk = blockChainService.getBlockChain(nextIndex, chunkEnd);
+                if (chunk.isEmpty()) {
+                    nextIndex = toIndex; // chain was truncated during the stream
+                    continue;
+                }
+                responseObserver.onNext(toResponse.apply(chunk));
+                nextIndex += chunk.size();
+            }
+        }
+
+        private synchronized void cancel() {
+            if (!finished) {
+                finished = true;
+                System.out.printf("Blockchain stream was cancelled at index: [%d]%n", nextIndex);
+            }
+        }
+
+        private boolean isReady() {
+            return !(responseObserver instanceof ServerCallStreamObserver<?> serverObserver) || serverObserver.isReady();
+        }
+    }
 }
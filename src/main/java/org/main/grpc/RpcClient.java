@@ -1,30 +1,79 @@
 package org.main.grpc;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.protobuf.Empty;
+import io.grpc.Channel;
+import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.BlockGenerationUtils;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.entity.BlockHeader;
+import org.main.grpc.entity.BlockAnnouncement;
 import org.main.grpc.entity.GetBlockChainResponse;
 import org.main.grpc.entity.HeartbeatResponse;
 import org.main.grpc.entity.MinedBlockResponse;
 import org.main.grpc.entity.MinedBlockResponseCode;
 import org.main.java.grpc.BlockOuterClass;
 import org.main.java.grpc.BlockServiceGrpc;
+import org.main.metrics.NodeMetrics;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class RpcClient {
 
 
     private final String nodeName;
+    private final int syncChunkSize;
+    private final long syncRangeDeadlineMillis;
+    private final long rpcDeadlineMillis;
+    private final ParallelRangeFetcher rangeFetcher;
+    @Nullable
+    private final GossipClient gossipClient;
+    private final KnownBlocks knownBlocks = new KnownBlocks(RpcConfiguration.KNOWN_BLOCKS_PER_PEER);
+    /**
+     * Адреса узлов по именам, чтобы узнать узел по имени отправителя объявления
+     */
+    private final Map<String, String> hostsByNodeName = new HashMap<>();
 
     List<BlockServiceGrpc.BlockServiceBlockingStub> stubs;
 
     public RpcClient(String nodeName, Properties properties) {
         this.nodeName = nodeName;
         this.stubs = new ArrayList<>();
+        this.syncChunkSize = Integer.parseInt(properties.getProperty(RpcConfiguration.SYNC_CHUNK_SIZE_PROPERTY,
+                String.valueOf(RpcConfiguration.DEFAULT_SYNC_CHUNK_SIZE)));
+        this.rpcDeadlineMillis = Long.parseLong(properties.getProperty(RpcConfiguration.RPC_DEADLINE_MS_PROPERTY,
+                String.valueOf(RpcConfiguration.DEFAULT_RPC_DEADLINE_MS)));
+        this.syncRangeDeadlineMillis = Long.parseLong(properties.getProperty(RpcConfiguration.SYNC_RANGE_DEADLINE_MS_PROPERTY,
+                String.valueOf(RpcConfiguration.DEFAULT_SYNC_RANGE_DEADLINE_MS)));
+        int syncRangeSize = Integer.parseInt(properties.getProperty(RpcConfiguration.SYNC_RANGE_SIZE_PROPERTY,
+                String.valueOf(RpcConfiguration.DEFAULT_SYNC_RANGE_SIZE)));
+        this.rangeFetcher = new ParallelRangeFetcher(Executors.newCachedThreadPool(new SyncThreadFactory()),
+                syncRangeSize, RpcConfiguration.SYNC_RANGES_IN_FLIGHT_PER_PEER);
+        boolean gossipEnabled = Boolean.parseBoolean(properties.getProperty(RpcConfiguration.GOSSIP_ENABLED_PROPERTY, "true"));
+        this.gossipClient = gossipEnabled
+                ? new GossipClient(Long.parseLong(properties.getProperty(RpcConfiguration.GOSSIP_RETRY_MS_PROPERTY,
+                        String.valueOf(RpcConfiguration.DEFAULT_GOSSIP_RETRY_MS))))
+                : null;
         init(properties);
     }
 
@@ -39,44 +88,115 @@ public class RpcClient {
             String[] targetAddress = target.split(":");
             ManagedChannel channel = ManagedChannelBuilder.forAddress(targetAddress[0], Integer.parseInt(targetAddress[1]))
                     .usePlaintext()
+                    .intercept(new RpcMetricsInterceptor(target))
                     .build();
             stubs.add(BlockServiceGrpc.newBlockingStub(channel));
+            hostsByNodeName.put(curNodeName.toLowerCase(Locale.ROOT), channel.authority());
             System.out.printf("Added node to cluster: index: [%d]; address: [%s]%n", i, target);
         }
     }
 
+    /**
+     * Рассылает блок всем узлам асинхронно и возвращается, как только ответило большинство узлов.
+     * Запросы к остальным отменяются, такие узлы попадают в результат как {@link MinedBlockResponseCode#FAILED}.
+     * <p>
+     * Сначала узлу отправляется только хеш и индекс блока, тело - только если узел его запросил.
+     * Узлам, у которых блок уже есть, тело не отправляется, они попадают в результат как
+     * {@link MinedBlockResponseCode#ACCEPTED}: блок у них уже в цепочке
+     */
     public List<MinedBlockResponse> sendBlockBroadcast(Block block) {
+        BlockHash hash = block.getBlockHash();
+        BlockOuterClass.BlockAnnouncement announcement = RpcEntityConverter.from(
+                new BlockAnnouncement(block.getIndex(), hash, nodeName));
         BlockOuterClass.Block rpcBlock = RpcEntityConverter.from(block);
         BlockOuterClass.MinedBlockRequest request = BlockOuterClass.MinedBlockRequest.newBuilder()
                 .setBlock(rpcBlock)
                 .build();
-        return stubs.parallelStream()
-                .map(stub -> {
-                    String host = stub.getChannel().authority();
-                    System.out.printf("Sending block with index: [%d] to node: [%s]%n", block.getIndex(), host);
-                    BlockOuterClass.MinedBlockResponse rpcResponse;
-                    try {
-                        rpcResponse = stub.sendBlock(request);
-                    } catch (Exception e) {
-                        return new MinedBlockResponse(host, MinedBlockResponseCode.FAILED, null);
+        BlockOuterClass.MinedBlockResponse alreadyKnown = BlockOuterClass.MinedBlockResponse.newBuilder()
+                .setCode(BlockOuterClass.ResponseCode.ACCEPTED)
+                .build();
+        int quorum = stubs.size() / 2 + 1;
+        return broadcast(quorum,
+                (host, stub) -> {
+                    if (knownBlocks.contains(host, hash)) {
+                        System.out.printf("Node: [%s] already has block with index: [%d]%n", host, block.getIndex());
+                        return Futures.immediateFuture(alreadyKnown);
+                    }
+                    return Futures.transformAsync(announceBlock(stub, announcement), wanted -> {
+                        if (!wanted) {
+                            return Futures.immediateFuture(alreadyKnown);
+                        }
+                        System.out.printf("Sending block with index: [%d] to node: [%s]%n", block.getIndex(), host);
+                        return sendBlock(stub, rpcBlock, request);
+                    }, MoreExecutors.directExecutor());
+                },
+                (host, rpcResponse) -> {
+                    if (rpcResponse.getCode() == BlockOuterClass.ResponseCode.ACCEPTED) { // a rejected block is not known
+                        knownBlocks.add(host, hash);
                     }
                     return RpcEntityConverter.from(host, rpcResponse);
-                })
-                .toList();
+                },
+                host -> new MinedBlockResponse(host, MinedBlockResponseCode.FAILED, null));
+    }
+
+    /**
+     * @return {@code true}, если узел запросил тело блока. Узлы, которые не поддерживают объявления,
+     * всегда получают тело
+     */
+    private ListenableFuture<Boolean> announceBlock(BlockServiceGrpc.BlockServiceFutureStub stub,
+                                                    BlockOuterClass.BlockAnnouncement announcement) {
+        Supplier<ListenableFuture<Boolean>> unaryCall = () -> Futures.catching(
+                Futures.transform(stub.announceBlock(announcement), BlockOuterClass.AnnouncementResponse::getWanted,
+                        MoreExecutors.directExecutor()),
+                StatusRuntimeException.class,
+                e -> {
+                    if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+                        throw e;
+                    }
+                    return true;
+                },
+                MoreExecutors.directExecutor());
+        if (gossipClient == null) {
+            return unaryCall.get();
+        }
+        return gossipClient.call(stub.getChannel(), "gossip.offer",
+                peer -> Futures.transform(peer.offer(announcement), code -> code == BlockOuterClass.ResponseCode.ACCEPTED,
+                        MoreExecutors.directExecutor()),
+                unaryCall,
+                rpcDeadlineMillis);
+    }
+
+    private ListenableFuture<BlockOuterClass.MinedBlockResponse> sendBlock(BlockServiceGrpc.BlockServiceFutureStub stub,
+                                                                          BlockOuterClass.Block rpcBlock,
+                                                                          BlockOuterClass.MinedBlockRequest request) {
+        if (gossipClient == null) {
+            return stub.sendBlock(request);
+        }
+        return gossipClient.call(stub.getChannel(), "gossip.announce",
+                peer -> Futures.transform(peer.announce(rpcBlock),
+                        code -> BlockOuterClass.MinedBlockResponse.newBuilder().setCode(code).build(),
+                        MoreExecutors.directExecutor()),
+                () -> stub.sendBlock(request),
+                rpcDeadlineMillis);
+    }
+
+    /**
+     * Запоминает, что у узла {@code sender} уже есть блок, чтобы не отправлять его этому узлу
+     */
+    public void markKnown(@NotNull String sender, @Nullable BlockHash hash) {
+        String host = hostsByNodeName.get(sender.toLowerCase(Locale.ROOT));
+        if (host != null) {
+            knownBlocks.add(host, hash);
+        }
     }
 
     @NotNull
     public GetBlockChainResponse getBlockchain(long fromIndex) {
-        Map<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> heartbeatResponses = sendHeartbeatBroadcast();
-        Map.Entry<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> hostWithMaxChainLength = heartbeatResponses.entrySet().stream()
-                .max(Comparator.comparingLong(host -> host.getValue().chainLength()))
-                .filter(heartbeatResponse -> heartbeatResponse.getValue().chainLength() > 0)
-                .orElse(null);
-        if (hostWithMaxChainLength == null) {
+        BlockServiceGrpc.BlockServiceBlockingStub stub = findHostWithMaxChainLength();
+        if (stub == null) {
             System.out.println("Can't find host with max blockchain length");
             return GetBlockChainResponse.EMPTY;
         }
-        BlockServiceGrpc.BlockServiceBlockingStub stub = hostWithMaxChainLength.getKey();
         BlockOuterClass.GetBlockChainResponse blockchainResponse;
         try {
             BlockOuterClass.GetBlockChainRequest request = BlockOuterClass.GetBlockChainRequest.newBuilder()
@@ -90,22 +210,269 @@ public class RpcClient {
         return RpcEntityConverter.from(blockchainResponse);
     }
 
+    /**
+     * Получает цепочку от {@code fromIndex} потоком порций с узла с самой длинной цепочкой. Следующая порция
+     * запрашивается у сервера только после обработки предыдущей.
+     *
+     * @param chunkConsumer получает порции по порядку, {@code false} прерывает поток
+     * @return {@code false}, если поток не удалось получить до конца и нужно использовать {@link #getBlockchain}
+     */
+    public boolean streamBlockchain(long fromIndex, @NotNull Predicate<List<Block>> chunkConsumer) {
+        BlockServiceGrpc.BlockServiceBlockingStub stub = findHostWithMaxChainLength();
+        if (stub == null) {
+            System.out.println("Can't find host with max blockchain length");
+            return true; // nothing to fetch
+        }
+        String host = stub.getChannel().authority();
+        BlockOuterClass.GetBlockChainRequest request = BlockOuterClass.GetBlockChainRequest.newBuilder()
+                .setFromIndex(fromIndex)
+                .setChunkSize(syncChunkSize)
+                .build();
+        Context.CancellableContext context = Context.current().withCancellation();
+        Context previous = context.attach();
+        try {
+            Iterator<BlockOuterClass.GetBlockChainResponse> chunks = stub.streamBlockchain(request);
+            while (chunks.hasNext()) {
+                List<Block> chunk = RpcEntityConverter.from(chunks.next()).blockChain();
+                if (!chunkConsumer.test(chunk)) {
+                    System.out.printf("Blockchain stream from node: [%s] was stopped by receiver%n", host);
+                    return true;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            System.out.printf("Failed to stream blockchain from node: [%s]: %s%n", host, e.getMessage());
+            return false;
+        } finally {
+            context.detach(previous);
+            context.cancel(null); // releases the call if the stream was stopped early
+        }
+    }
+
+    /**
+     * Загружает цепочку от {@code fromIndex} параллельно со всех узлов, чьи цепочки длиннее локальной:
+     * диапазон делится на отрезки, каждый отрезок загружается потоком со своего узла за ограниченное время,
+     * при сбое повторяется на другом узле. Отрезки передаются получателю по порядку.
+     *
+     * @param rangeConsumer получает отрезки по порядку, {@code false} прерывает загрузку
+     * @return {@code false}, если подходящих узлов меньше двух или отрезок не удалось загрузить ни с одного узла;
+     * тогда остаток нужно получить через {@link #streamBlockchain}
+     */
+    public boolean syncBlockchainInRanges(long fromIndex, @NotNull Predicate<List<Block>> rangeConsumer) {
+        List<ParallelRangeFetcher.Peer> peers = peersAhead(fromIndex);
+        if (peers.size() < 2) {
+            return false; // a single peer is served better by one stream
+        }
+        long toIndex = peers.stream().mapToLong(ParallelRangeFetcher.Peer::chainLength).max().orElseThrow();
+        System.out.printf("Syncing blocks [%d, %d) from [%d] nodes%n", fromIndex, toIndex, peers.size());
+        return rangeFetcher.fetch(peers, fromIndex, toIndex, this::loadBlockRange, rangeConsumer);
+    }
+
+    /**
+     * Заголовки блоков от {@code fromIndex} с узла с самой длинной цепочкой
+     *
+     * @return {@code null}, если узел не отдает заголовки
+     */
+    @Nullable
+    public List<BlockHeader> getHeaders(long fromIndex) {
+        BlockServiceGrpc.BlockServiceBlockingStub stub = findHostWithMaxChainLength();
+        if (stub == null) {
+            System.out.println("Can't find host with max blockchain length");
+            return null;
+        }
+        BlockOuterClass.GetBlockChainRequest request = BlockOuterClass.GetBlockChainRequest.newBuilder()
+                .setFromIndex(fromIndex)
+                .setChunkSize(RpcConfiguration.MAX_SYNC_CHUNK_SIZE) // headers are small
+                .build();
+        List<BlockHeader> headers = new ArrayList<>();
+        try {
+            stub.getHeaders(request).forEachRemaining(response -> response.getHeaderList().stream()
+                    .map(RpcEntityConverter::from)
+                    .forEach(headers::add));
+        } catch (Exception e) {
+            System.out.printf("Failed to get headers from node: [%s]: %s%n", stub.getChannel().authority(), e.getMessage());
+            return null;
+        }
+        return headers;
+    }
+
+    /**
+     * Загружает тела блоков для уже проверенных заголовков параллельно со всех узлов, как
+     * {@link #syncBlockchainInRanges}. Тело, которое не совпадает с заголовком или не проходит пересчет
+     * proof-of-work, считается ошибкой узла, и отрезок загружается с другого узла.
+     *
+     * @param headers заголовки подряд идущих блоков
+     * @param bodyConsumer получает блоки отрезками по порядку, {@code false} прерывает загрузку
+     * @return {@code false}, если отрезок не удалось загрузить ни с одного узла
+     */
+    public boolean fetchBodies(@NotNull List<BlockHeader> headers, @NotNull Predicate<List<Block>> bodyConsumer) {
+        if (headers.isEmpty()) {
+            return true;
+        }
+        long fromIndex = headers.get(0).index();
+        long toIndex = fromIndex + headers.size();
+        List<ParallelRangeFetcher.Peer> peers = peersAhead(fromIndex);
+        System.out.printf("Fetching bodies of blocks [%d, %d) from [%d] nodes%n", fromIndex, toIndex, peers.size());
+        return rangeFetcher.fetch(peers, fromIndex, toIndex, (stub, from, to) -> {
+            List<Block> bodies = loadBlockRange(stub, from, to);
+            for (Block body : bodies) {
+                BlockHeader header = headers.get((int) (body.getIndex() - fromIndex));
+                if (!header.matches(body) || !BlockGenerationUtils.isBlockHashValid(body)) {
+                    throw new IllegalStateException("Body of block [" + body.getIndex() + "] doesn't match its header");
+                }
+            }
+            return bodies;
+        }, bodyConsumer);
+    }
+
+    @NotNull
+    private List<Block> loadBlockRange(@NotNull BlockServiceGrpc.BlockServiceBlockingStub stub, long fromIndex, long toIndex) {
+        BlockOuterClass.GetBlockChainRequest request = BlockOuterClass.GetBlockChainRequest.newBuilder()
+                .setFromIndex(fromIndex)
+                .setToIndex(toIndex)
+                .setChunkSize(syncChunkSize)
+                .build();
+        List<Block> range = new ArrayList<>((int) (toIndex - fromIndex));
+        stub.withDeadlineAfter(syncRangeDeadlineMillis, TimeUnit.MILLISECONDS)
+                .streamBlockchain(request)
+                .forEachRemaining(chunk -> range.addAll(RpcEntityConverter.from(chunk).blockChain()));
+        return range;
+    }
+
+    /**
+     * Узлы, у которых есть блок с индексом {@code fromIndex}
+     */
+    @NotNull
+    private List<ParallelRangeFetcher.Peer> peersAhead(long fromIndex) {
+        return sendHeartbeatBroadcast().entrySet().stream()
+                .filter(entry -> entry.getValue().chainLength() > fromIndex)
+                .map(entry -> new ParallelRangeFetcher.Peer(entry.getKey(), entry.getValue().chainLength()))
+                .toList();
+    }
+
+    @Nullable
+    private BlockServiceGrpc.BlockServiceBlockingStub findHostWithMaxChainLength() {
+        return sendHeartbeatBroadcast().entrySet().stream()
+                .max(Comparator.comparingLong(host -> host.getValue().chainLength()))
+                .filter(heartbeatResponse -> heartbeatResponse.getValue().chainLength() > 0)
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
+    /**
+     * Опрашивает все узлы асинхронно, ответ ждется не дольше {@code rpc_deadline_ms}
+     */
     @NotNull
     public Map<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> sendHeartbeatBroadcast() {
-        return stubs.parallelStream()
-                .collect(Collectors.toMap(stub -> stub, stub -> {
-                    String host = stub.getChannel().authority();
+        List<BlockServiceGrpc.BlockServiceBlockingStub> targets = List.copyOf(stubs);
+        List<HeartbeatResponse> responses = broadcast(targets, targets.size(),
+                (host, stub) -> {
                     System.out.printf("Sending heartbeat to node: [%s]%n", host);
-                    BlockOuterClass.HeartbeatResponse rpcResponse;
-                    try {
-                        rpcResponse = stub.sendHeartbeat(Empty.newBuilder().build());
-                    } catch (Exception e) {
-                        System.out.printf("Failed to send heartbeat to node: [%s]%n", host);
-                        return new HeartbeatResponse(-1L);
+                    if (gossipClient == null) {
+                        return stub.sendHeartbeat(Empty.getDefaultInstance());
+                    }
+                    return gossipClient.call(stub.getChannel(), "gossip.heartbeat", GossipPeer::heartbeat,
+                            () -> stub.sendHeartbeat(Empty.getDefaultInstance()), rpcDeadlineMillis);
+                },
+                (host, rpcResponse) -> {
+                    HeartbeatResponse response = RpcEntityConverter.from(rpcResponse);
+                    NodeMetrics.PEER_CHAIN_LENGTH.labels(host).set(response.chainLength());
+                    return response;
+                },
+                host -> {
+                    System.out.printf("Failed to send heartbeat to node: [%s]%n", host);
+                    return new HeartbeatResponse(-1L);
+                });
+        Map<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> heartbeatResponses = new HashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            heartbeatResponses.put(targets.get(i), responses.get(i));
+        }
+        return heartbeatResponses;
+    }
+
+    private <T, R> List<R> broadcast(int quorum,
+                                     BiFunction<String, BlockServiceGrpc.BlockServiceFutureStub, ListenableFuture<T>> call,
+                                     BiFunction<String, T, R> toResult,
+                                     Function<String, R> failedResult) {
+        return broadcast(List.copyOf(stubs), quorum, call, toResult, failedResult);
+    }
+
+    /**
+     * Отправляет запрос всем узлам через future-стабы с дедлайном {@code rpc_deadline_ms} и ждет, пока
+     * {@code quorum} узлов ответят успешно или все запросы завершатся. Незавершенные запросы отменяются.
+     *
+     * @return результаты в порядке {@code targets}
+     */
+    private <T, R> List<R> broadcast(List<BlockServiceGrpc.BlockServiceBlockingStub> targets, int quorum,
+                                     BiFunction<String, BlockServiceGrpc.BlockServiceFutureStub, ListenableFuture<T>> call,
+                                     BiFunction<String, T, R> toResult,
+                                     Function<String, R> failedResult) {
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<>(targets.size());
+        List<ListenableFuture<T>> futures = new ArrayList<>(targets.size());
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger pending = new AtomicInteger(targets.size());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (targets.isEmpty() || quorum <= 0) {
+            done.complete(null);
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            int slot = i;
+            Channel channel = targets.get(i).getChannel();
+            String host = channel.authority();
+            BlockServiceGrpc.BlockServiceFutureStub stub = BlockServiceGrpc.newFutureStub(channel)
+                    .withDeadlineAfter(rpcDeadlineMillis, TimeUnit.MILLISECONDS);
+            ListenableFuture<T> future;
+            try {
+                future = call.apply(host, stub);
+            } catch (Exception e) {
+                future = Futures.immediateFailedFuture(e);
+            }
+            futures.add(future);
+            Futures.addCallback(future, new FutureCallback<>() {
+                @Override
+                public void onSuccess(T response) {
+                    results.compareAndSet(slot, null, toResult.apply(host, response));
+                    if (succeeded.incrementAndGet() >= quorum) {
+                        done.complete(null);
                     }
-                    return RpcEntityConverter.from(rpcResponse);
-                }));
+                    completeIfLast();
+                }
+
+                @Override
+                public void onFailure(@NotNull Throwable t) {
+                    results.compareAndSet(slot, null, failedResult.apply(host));
+                    completeIfLast();
+                }
+
+                private void completeIfLast() {
+                    if (pending.decrementAndGet() == 0) {
+                        done.complete(null);
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        done.join(); // bounded by the deadline of every call
+        List<R> responses = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            if (!futures.get(i).isDone()) {
+                futures.get(i).cancel(true); // straggler after the quorum
+            }
+            results.compareAndSet(i, null, failedResult.apply(targets.get(i).getChannel().authority()));
+            responses.add(results.get(i));
+        }
+        return responses;
     }
 
+    private static class SyncThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
 
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "sync-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
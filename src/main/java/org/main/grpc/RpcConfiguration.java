@@ -5,6 +5,22 @@ public final class RpcConfiguration {
     static final String PORT_PROPERTY = "port";
     static final String NODES_AMOUNT_PROPERTY = "nodes_amount";
     static final String NODE_PREFIX_PROPERTY = "node_";
+    static final String RPC_DEADLINE_MS_PROPERTY = "rpc_deadline_ms";
+    static final String GOSSIP_ENABLED_PROPERTY = "gossip_enabled";
+    static final String GOSSIP_RETRY_MS_PROPERTY = "gossip_retry_ms";
+    static final String SYNC_CHUNK_SIZE_PROPERTY = "sync_chunk_size";
+    static final String SYNC_RANGE_SIZE_PROPERTY = "sync_range_size";
+    static final String SYNC_RANGE_DEADLINE_MS_PROPERTY = "sync_range_deadline_ms";
+
+    static final long DEFAULT_RPC_DEADLINE_MS = 3_000L;
+    static final long DEFAULT_GOSSIP_RETRY_MS = 30_000L;
+    static final int DEFAULT_SYNC_CHUNK_SIZE = 256;
+    static final int MAX_SYNC_CHUNK_SIZE = 4096;
+    static final int DEFAULT_SYNC_RANGE_SIZE = 2048;
+    static final long DEFAULT_SYNC_RANGE_DEADLINE_MS = 30_000L;
+    static final int SYNC_RANGES_IN_FLIGHT_PER_PEER = 2;
+    static final int KNOWN_BLOCKS_PER_PEER = 1024;
+    static final int PROTO_BLOCK_CACHE_SIZE = 16_384;
 
     private RpcConfiguration() {
     }
@@ -1,15 +1,23 @@
 package org.main.grpc;
 
+import com.google.protobuf.ByteString;
 import org.apache.commons.lang3.Validate;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.BlockGenerationUtils;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.entity.BlockHeader;
+import org.main.grpc.entity.BlockAnnouncement;
 import org.main.grpc.entity.GetBlockChainResponse;
 import org.main.grpc.entity.HeartbeatResponse;
 import org.main.grpc.entity.MinedBlockResponse;
 import org.main.grpc.entity.MinedBlockResponseCode;
 import org.main.java.grpc.BlockOuterClass;
+import org.main.merkle.InclusionProof;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public final class RpcEntityConverter {
@@ -32,23 +40,137 @@ public final class RpcEntityConverter {
     @NotNull
     public static BlockOuterClass.Block from(@NotNull Block block) {
         Validate.notNull(block);
-        return BlockOuterClass.Block.newBuilder()
+        BlockOuterClass.Block.Builder builder = BlockOuterClass.Block.newBuilder()
                 .setIndex(block.getIndex())
-                .setPrevHash(block.getPrevHash())
-                .setHash(block.getHash())
                 .setNonce(block.getNonce())
                 .setData(block.getData())
-                .build();
+                .setTimestamp(block.getTimestamp())
+                .setDifficulty(block.getDifficulty());
+        setHash(block.getPrevBlockHash(), builder::setPrevHashRaw, builder::setPrevHash);
+        setHash(block.getBlockHash(), builder::setHashRaw, builder::setHash);
+        return builder.build();
     }
 
     @NotNull
     public static Block from(@NotNull BlockOuterClass.Block block) {
         Validate.notNull(block);
         return new Block(block.getIndex(),
-                block.getPrevHash(),
-                block.getHash(),
+                toBlockHash(block.getPrevHashRaw(), block.getPrevHash()),
+                toBlockHash(block.getHashRaw(), block.getHash()),
                 block.getNonce(),
-                block.getData());
+                block.getData(),
+                block.getTimestamp() == 0 ? System.currentTimeMillis() : block.getTimestamp(),
+                block.getDifficulty() == 0 ? BlockGenerationUtils.INITIAL_DIFFICULTY : block.getDifficulty());
+    }
+
+    @NotNull
+    public static BlockOuterClass.BlockHeader from(@NotNull BlockHeader header) {
+        Validate.notNull(header);
+        BlockOuterClass.BlockHeader.Builder builder = BlockOuterClass.BlockHeader.newBuilder()
+                .setIndex(header.index())
+                .setNonce(header.nonce())
+                .setTimestamp(header.timestamp())
+                .setDifficulty(header.difficulty());
+        setHash(header.prevHash(), builder::setPrevHashRaw, builder::setPrevHash);
+        setHash(header.hash(), builder::setHashRaw, builder::setHash);
+        if (header.merkleRoot() != null) {
+            builder.setMerkleRoot(ByteString.copyFrom(header.merkleRoot().toBytes()));
+        }
+        return builder.build();
+    }
+
+    @NotNull
+    public static BlockHeader from(@NotNull BlockOuterClass.BlockHeader header) {
+        Validate.notNull(header);
+        return new BlockHeader(header.getIndex(),
+                toBlockHash(header.getPrevHashRaw(), header.getPrevHash()),
+                toBlockHash(header.getHashRaw(), header.getHash()),
+                header.getNonce(),
+                header.getTimestamp(),
+                header.getMerkleRoot().isEmpty() ? null : BlockHash.of(header.getMerkleRoot().toByteArray()),
+                header.getDifficulty() == 0 ? BlockGenerationUtils.INITIAL_DIFFICULTY : header.getDifficulty());
+    }
+
+    @NotNull
+    public static BlockOuterClass.BlockAnnouncement from(@NotNull BlockAnnouncement announcement) {
+        Validate.notNull(announcement);
+        BlockOuterClass.BlockAnnouncement.Builder builder = BlockOuterClass.BlockAnnouncement.newBuilder()
+                .setIndex(announcement.index())
+                .setSender(announcement.sender());
+        setHash(announcement.hash(), builder::setHashRaw, builder::setHash);
+        return builder.build();
+    }
+
+    @NotNull
+    public static BlockHash from(@NotNull BlockOuterClass.GetBlockByHashRequest request) {
+        Validate.notNull(request);
+        return toBlockHash(request.getHashRaw(), request.getHash());
+    }
+
+    @NotNull
+    public static BlockOuterClass.GetBlockResponse toBlockResponse(@Nullable Block block) {
+        BlockOuterClass.GetBlockResponse.Builder builder = BlockOuterClass.GetBlockResponse.newBuilder();
+        if (block != null) {
+            builder.setBlock(from(block));
+        }
+        return builder.build();
+    }
+
+    @NotNull
+    public static BlockOuterClass.InclusionProofResponse toInclusionProofResponse(@Nullable InclusionProof proof) {
+        BlockOuterClass.InclusionProofResponse.Builder builder = BlockOuterClass.InclusionProofResponse.newBuilder();
+        if (proof != null) {
+            builder.setHeader(from(proof.header()))
+                    .setLeafIndex(proof.leafIndex())
+                    .setTreeSize(proof.treeSize());
+            proof.auditPath().forEach(hash -> builder.addAuditPath(ByteString.copyFrom(hash.toBytes())));
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return {@code null}, если в блоке нет записи {@code entry}
+     */
+    @Nullable
+    public static InclusionProof from(@NotNull BlockOuterClass.InclusionProofResponse response, @NotNull String entry) {
+        Validate.notNull(response);
+        if (!response.hasHeader()) {
+            return null;
+        }
+        List<BlockHash> auditPath = response.getAuditPathList().stream()
+                .map(hash -> BlockHash.of(hash.toByteArray()))
+                .toList();
+        return new InclusionProof(from(response.getHeader()), entry, response.getLeafIndex(), response.getTreeSize(), auditPath);
+    }
+
+    @NotNull
+    public static BlockAnnouncement from(@NotNull BlockOuterClass.BlockAnnouncement announcement) {
+        Validate.notNull(announcement);
+        return new BlockAnnouncement(announcement.getIndex(),
+                toBlockHash(announcement.getHashRaw(), announcement.getHash()),
+                announcement.getSender());
+    }
+
+    /**
+     * Бинарный хеш отправляется сырыми байтами, хеш-строка - как есть
+     */
+    private static void setHash(@Nullable BlockHash hash, @NotNull Consumer<ByteString> rawSetter, @NotNull Consumer<String> textSetter) {
+        if (hash == null) {
+            return;
+        }
+        if (hash.isBinary()) {
+            rawSetter.accept(ByteString.copyFrom(hash.toBytes()));
+        } else {
+            textSetter.accept(hash.toString());
+        }
+    }
+
+    /**
+     * Старые узлы присылают хеши только hex-строками, новые - сырыми байтами
+     */
+    @NotNull
+    private static BlockHash toBlockHash(@NotNull ByteString raw, @NotNull String text) {
+        return raw.isEmpty() ? BlockHash.of(text) : BlockHash.of(raw.toByteArray());
     }
 
     @NotNull
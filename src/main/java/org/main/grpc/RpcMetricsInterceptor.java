@@ -0,0 +1,52 @@
+package org.main.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.main.metrics.NodeMetrics;
+
+/**
+ * Задержка и ошибки вызовов к узлу с метками узла и метода. Задержка клиентских и двунаправленных
+ * потоков не записывается: это время жизни потока, а не ответа. Запросы через gossip-поток измеряет
+ * {@link GossipClient}
+ */
+final class RpcMetricsInterceptor implements ClientInterceptor {
+
+    private final String peer;
+
+    RpcMetricsInterceptor(String peer) {
+        this.peer = peer;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions,
+                                                               Channel next) {
+        String methodName = method.getBareMethodName();
+        boolean timed = method.getType().clientSendsOneMessage();
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long startNanos = System.nanoTime();
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        if (timed) {
+                            NodeMetrics.RPC_CLIENT_SECONDS.labels(peer, methodName).observeSince(startNanos);
+                        }
+                        if (!status.isOk()) {
+                            NodeMetrics.RPC_CLIENT_ERRORS.labels(peer, methodName, status.getCode().name()).inc();
+                        }
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+}
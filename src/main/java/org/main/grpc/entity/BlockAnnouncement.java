@@ -0,0 +1,12 @@
+package org.main.grpc.entity;
+
+import org.main.entity.BlockHash;
+
+/**
+ * Объявление о новом блоке без его тела
+ *
+ * @param sender имя узла, у которого есть блок
+ */
+public record BlockAnnouncement(long index, BlockHash hash, String sender) {
+
+}
@@ -0,0 +1,26 @@
+package org.main.mempool;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * {@code data} блока из записей мемпула: записи по одной на строку
+ */
+public final class BlockPayload {
+
+    static final char SEPARATOR = '\n';
+
+    private BlockPayload() {
+    }
+
+    @NotNull
+    public static String encode(@NotNull List<String> entries) {
+        return String.join(String.valueOf(SEPARATOR), entries);
+    }
+
+    @NotNull
+    public static List<String> decode(@NotNull String data) {
+        return data.isEmpty() ? List.of() : List.of(data.split(String.valueOf(SEPARATOR), -1));
+    }
+}
@@ -0,0 +1,198 @@
+package org.main.mempool;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.BlockHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Записи, ожидающие включения в блок, в порядке поступления. Запись идентифицируется SHA-256 своего текста,
+ * повторы отсеиваются, в том числе недавно попавшие в блоки. Размер ограничен оценкой занятой памяти.
+ * <p>
+ * Хеши считаются вне лока, под локом только операции со словарями, поэтому прием пачками не мешает сборке блока.
+ */
+public class Mempool {
+
+    /**
+     * Оценка памяти на запись помимо текста: узел словаря, запись, {@link BlockHash}, заголовок строки
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<BlockHash, Entry> entries = new LinkedHashMap<>();
+    private final Map<BlockHash, Boolean> confirmed = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BlockHash, Boolean> eldest) {
+            return size() > MempoolConfiguration.CONFIRMED_IDS;
+        }
+    };
+    private long bytes;
+
+    public Mempool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @NotNull
+    public SubmitResult addAll(@NotNull List<String> batch) {
+        List<Entry> valid = new ArrayList<>(batch.size());
+        for (String text : batch) {
+            Entry entry = Entry.of(text);
+            if (entry != null) {
+                valid.add(entry);
+            }
+        }
+        int rejected = batch.size() - valid.size();
+        int accepted = 0;
+        int duplicates = 0;
+        lock.lock();
+        try {
+            for (Entry entry : valid) {
+                if (entries.containsKey(entry.id()) || confirmed.containsKey(entry.id())) {
+                    duplicates++;
+                    continue;
+                }
+                if (bytes + entry.memoryBytes() > maxBytes) {
+                    rejected++;
+                    continue;
+                }
+                entries.put(entry.id(), entry);
+                bytes += entry.memoryBytes();
+                accepted++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new SubmitResult(accepted, duplicates, rejected);
+    }
+
+    /**
+     * Самые старые записи, которые помещаются в {@code maxBlockBytes} байт {@code data} блока.
+     * Записи остаются в мемпуле, пока блок с ними не будет добавлен в цепочку
+     */
+    @NotNull
+    public List<String> select(int maxBlockBytes) {
+        List<String> selected = new ArrayList<>();
+        long blockBytes = 0;
+        lock.lock();
+        try {
+            for (Entry entry : entries.values()) {
+                long entryBytes = entry.utf8Length() + (selected.isEmpty() ? 0 : 1); // with the separator
+                if (blockBytes + entryBytes > maxBlockBytes) {
+                    break;
+                }
+                selected.add(entry.text());
+                blockBytes += entryBytes;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return selected;
+    }
+
+    /**
+     * Убирает записи, попавшие в блок, и запоминает их, чтобы не принять повторно
+     */
+    public void removeIncluded(@NotNull List<String> included) {
+        List<BlockHash> ids = new ArrayList<>(included.size());
+        for (String text : included) {
+            Entry entry = Entry.of(text);
+            if (entry != null) {
+                ids.add(entry.id());
+            }
+        }
+        lock.lock();
+        try {
+            for (BlockHash id : ids) {
+                Entry removed = entries.remove(id);
+                if (removed != null) {
+                    bytes -= removed.memoryBytes();
+                }
+                confirmed.put(id, Boolean.TRUE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записи блоков, отброшенных при переключении ветки, возвращаются в мемпул впереди остальных записей,
+     * пока помещаются в ограничение памяти. Записи, которые есть и в новой ветке, снова убираются
+     * {@link #removeIncluded}, когда ее блоки добавляются в цепочку
+     */
+    public void restore(@NotNull List<String> excluded) {
+        List<Entry> restored = new ArrayList<>(excluded.size());
+        for (String text : excluded) {
+            Entry entry = Entry.of(text);
+            if (entry != null) {
+                restored.add(entry);
+            }
+        }
+        lock.lock();
+        try {
+            Map<BlockHash, Entry> reordered = new LinkedHashMap<>();
+            for (Entry entry : restored) {
+                confirmed.remove(entry.id());
+                if (entries.containsKey(entry.id()) || reordered.containsKey(entry.id())
+                        || bytes + entry.memoryBytes() > maxBytes) {
+                    continue;
+                }
+                reordered.put(entry.id(), entry);
+                bytes += entry.memoryBytes();
+            }
+            if (!reordered.isEmpty()) {
+                reordered.putAll(entries);
+                entries = reordered;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long bytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry(BlockHash id, String text, int utf8Length) {
+
+        /**
+         * @return {@code null} для пустой, слишком длинной записи или записи с переводом строки
+         */
+        @Nullable
+        private static Entry of(@Nullable String text) {
+            if (text == null || text.isEmpty() || text.indexOf(BlockPayload.SEPARATOR) >= 0) {
+                return null;
+            }
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > MempoolConfiguration.MAX_ENTRY_BYTES) {
+                return null;
+            }
+            return new Entry(BlockHash.of(DigestUtils.sha256(utf8)), text, utf8.length);
+        }
+
+        private long memoryBytes() {
+            return ENTRY_OVERHEAD_BYTES + utf8Length;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.main.mempool;
+
+public final class MempoolConfiguration {
+
+    public static final String MEMPOOL_MAX_BYTES_PROPERTY = "mempool_max_bytes";
+
+    public static final long DEFAULT_MEMPOOL_MAX_BYTES = 64L * 1024 * 1024;
+    static final int MAX_ENTRY_BYTES = 16 * 1024;
+    /**
+     * Сколько идентификаторов записей, уже попавших в блоки, помнить для отсева повторов
+     */
+    static final int CONFIRMED_IDS = 200_000;
+
+    private MempoolConfiguration() {
+    }
+
+}
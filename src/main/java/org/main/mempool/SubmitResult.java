@@ -0,0 +1,16 @@
+package org.main.mempool;
+
+/**
+ * Итог приема пачки записей
+ *
+ * @param duplicates записи, которые уже есть в мемпуле или недавно попали в блок
+ * @param rejected   пустые, слишком длинные записи и записи, не поместившиеся в мемпул
+ */
+public record SubmitResult(int accepted, int duplicates, int rejected) {
+
+    public static final SubmitResult EMPTY = new SubmitResult(0, 0, 0);
+
+    public SubmitResult plus(SubmitResult other) {
+        return new SubmitResult(accepted + other.accepted, duplicates + other.duplicates, rejected + other.rejected);
+    }
+}
@@ -0,0 +1,26 @@
+package org.main.merkle;
+
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.BlockHeader;
+import org.main.entity.BlockHash;
+
+import java.util.List;
+
+/**
+ * Доказательство того, что запись входит в блок с заголовком {@code header}
+ *
+ * @param leafIndex позиция записи в блоке
+ * @param treeSize  число записей в блоке
+ * @param auditPath хеши соседей от листа к корню, см. {@link MerkleTree#auditPath}
+ */
+public record InclusionProof(@NotNull BlockHeader header, @NotNull String entry, long leafIndex, long treeSize,
+                             @NotNull List<BlockHash> auditPath) {
+
+    /**
+     * Сходится ли путь к корню Меркла из заголовка. Сам заголовок проверяется отдельно по цепочке заголовков
+     */
+    public boolean verify() {
+        return header.merkleRoot() != null
+                && MerkleTree.verify(entry, leafIndex, treeSize, auditPath, header.merkleRoot());
+    }
+}
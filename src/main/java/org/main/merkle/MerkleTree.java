@@ -0,0 +1,125 @@
+package org.main.merkle;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.BlockHash;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Дерево Меркла над записями блока по RFC 6962: лист - {@code SHA-256(0x00 || запись)},
+ * узел - {@code SHA-256(0x01 || левый || правый)}. Последний узел уровня без пары поднимается
+ * на следующий уровень без изменений, корень пустого списка - SHA-256 пустой строки.
+ * <p>
+ * Доказательство включения - хеши соседей от листа до корня, {@code log2(n)} хешей по 32 байта.
+ */
+public final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private MerkleTree() {
+    }
+
+    @NotNull
+    public static BlockHash root(@NotNull List<String> entries) {
+        if (entries.isEmpty()) {
+            return BlockHash.of(DigestUtils.sha256(new byte[0]));
+        }
+        byte[][] level = leaves(entries);
+        int size = level.length;
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        while (size > 1) {
+            size = up(level, size, digest);
+        }
+        return BlockHash.of(level[0]);
+    }
+
+    /**
+     * Хеши соседей для листа {@code leafIndex}, от нижнего уровня к корню
+     */
+    @NotNull
+    public static List<BlockHash> auditPath(@NotNull List<String> entries, int leafIndex) {
+        Validate.validIndex(entries, leafIndex, "Leaf [%d] is out of [%d] entries", leafIndex, entries.size());
+        byte[][] level = leaves(entries);
+        int size = level.length;
+        List<BlockHash> path = new ArrayList<>();
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        for (int index = leafIndex; size > 1; index >>= 1) {
+            int sibling = index ^ 1;
+            if (sibling < size) {
+                path.add(BlockHash.of(level[sibling]));
+            }
+            size = up(level, size, digest);
+        }
+        return path;
+    }
+
+    /**
+     * Проверка доказательства включения по RFC 9162, раздел 2.1.3.2
+     */
+    public static boolean verify(@NotNull String entry, long leafIndex, long treeSize,
+                                 @NotNull List<BlockHash> auditPath, @NotNull BlockHash root) {
+        if (leafIndex < 0 || leafIndex >= treeSize) {
+            return false;
+        }
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        long index = leafIndex;
+        long lastIndex = treeSize - 1;
+        byte[] hash = leafHash(entry, digest);
+        for (BlockHash sibling : auditPath) {
+            if (lastIndex == 0) {
+                return false;
+            }
+            if ((index & 1) == 1 || index == lastIndex) {
+                hash = nodeHash(sibling.toBytes(), hash, digest);
+                while ((index & 1) == 0 && index != 0) {
+                    index >>= 1;
+                    lastIndex >>= 1;
+                }
+            } else {
+                hash = nodeHash(hash, sibling.toBytes(), digest);
+            }
+            index >>= 1;
+            lastIndex >>= 1;
+        }
+        return lastIndex == 0 && root.equals(BlockHash.of(hash));
+    }
+
+    private static byte[][] leaves(List<String> entries) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        byte[][] level = new byte[entries.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(entries.get(i), digest);
+        }
+        return level;
+    }
+
+    /**
+     * Заменяет первые {@code size} узлов уровня узлами следующего уровня на месте
+     *
+     * @return размер следующего уровня
+     */
+    private static int up(byte[][] level, int size, MessageDigest digest) {
+        int next = 0;
+        for (int i = 0; i < size; i += 2) {
+            level[next++] = i + 1 < size ? nodeHash(level[i], level[i + 1], digest) : level[i];
+        }
+        return next;
+    }
+
+    private static byte[] leafHash(String entry, MessageDigest digest) {
+        digest.update(LEAF_PREFIX);
+        return digest.digest(entry.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] nodeHash(byte[] left, byte[] right, MessageDigest digest) {
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+}
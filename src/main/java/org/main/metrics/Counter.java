@@ -0,0 +1,26 @@
+package org.main.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Монотонный счетчик
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,20 @@
+package org.main.metrics;
+
+/**
+ * Значение, которое может как расти, так и уменьшаться
+ */
+public final class Gauge {
+
+    private volatile double value;
+
+    Gauge() {
+    }
+
+    public void set(double value) {
+        this.value = value;
+    }
+
+    public double get() {
+        return value;
+    }
+}
@@ -0,0 +1,72 @@
+package org.main.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Распределение длительностей по фиксированным корзинам в секундах. Наблюдение стоит одного поиска корзины
+ * и двух {@link LongAdder}, поэтому его можно делать на горячем пути
+ */
+public final class Histogram {
+
+    /**
+     * Корзины от 100 мкс до 10 с
+     */
+    public static final double[] LATENCY_BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final double[] upperBounds;
+    private final long[] upperBoundsNanos;
+    private final LongAdder[] counts; // the last one is +Inf
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(double[] upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        this.upperBoundsNanos = new long[upperBounds.length];
+        for (int i = 0; i < upperBounds.length; i++) {
+            upperBoundsNanos[i] = (long) (upperBounds[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+        this.counts = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void observeNanos(long nanos) {
+        int bucket = 0;
+        while (bucket < upperBoundsNanos.length && nanos > upperBoundsNanos[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Наблюдает время, прошедшее с {@code startNanos}, полученного из {@link System#nanoTime()}
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    double[] upperBounds() {
+        return upperBounds;
+    }
+
+    /**
+     * Накопленные значения корзин, как их отдает Prometheus: корзина содержит все наблюдения не больше ее границы
+     */
+    long[] cumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    double sumSeconds() {
+        return sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
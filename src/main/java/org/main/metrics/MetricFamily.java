@@ -0,0 +1,73 @@
+package org.main.metrics;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Метрика с одинаковым именем и разными значениями меток, например задержка вызовов по узлам
+ */
+public final class MetricFamily<T> {
+
+    /**
+     * Значения меток по порядку, чтобы вывод метрик не менялся между запросами
+     */
+    private static final Comparator<List<String>> LABEL_VALUES_ORDER = (left, right) -> {
+        for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+            int compared = left.get(i).compareTo(right.get(i));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(left.size(), right.size());
+    };
+
+    private final String name;
+    private final String help;
+    private final MetricType type;
+    private final List<String> labelNames;
+    private final Supplier<T> factory;
+    private final Map<List<String>, T> children = new ConcurrentSkipListMap<>(LABEL_VALUES_ORDER);
+
+    MetricFamily(String name, String help, MetricType type, List<String> labelNames, Supplier<T> factory) {
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = labelNames;
+        this.factory = factory;
+    }
+
+    /**
+     * @param labelValues значения меток в порядке их имен
+     */
+    @NotNull
+    public T labels(@NotNull String... labelValues) {
+        Validate.isTrue(labelValues.length == labelNames.size(), "Metric [%s] expects labels %s", name, labelNames);
+        return children.computeIfAbsent(List.of(labelValues), key -> factory.get());
+    }
+
+    String name() {
+        return name;
+    }
+
+    String help() {
+        return help;
+    }
+
+    MetricType type() {
+        return type;
+    }
+
+    List<String> labelNames() {
+        return labelNames;
+    }
+
+    Map<List<String>, T> children() {
+        return children;
+    }
+}
@@ -0,0 +1,13 @@
+package org.main.metrics;
+
+import java.util.Locale;
+
+enum MetricType {
+    COUNTER,
+    GAUGE,
+    HISTOGRAM;
+
+    String exposedName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
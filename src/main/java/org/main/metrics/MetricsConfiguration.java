@@ -0,0 +1,13 @@
+package org.main.metrics;
+
+public final class MetricsConfiguration {
+
+    /**
+     * Порт HTTP-эндпоинта метрик, без него эндпоинт не запускается
+     */
+    public static final String METRICS_PORT_PROPERTY = "metrics_port";
+
+    private MetricsConfiguration() {
+    }
+
+}
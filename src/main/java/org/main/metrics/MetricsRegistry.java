@@ -0,0 +1,144 @@
+package org.main.metrics;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Реестр метрик узла и их вывод в текстовом формате Prometheus 0.0.4.
+ * Метрики создаются один раз и обновляются без блокировок, вывод читает текущие значения
+ */
+public final class MetricsRegistry {
+
+    public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Map<String, MetricFamily<?>> families = new ConcurrentSkipListMap<>();
+
+    @NotNull
+    public MetricFamily<Counter> counter(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+        return family(name, help, MetricType.COUNTER, labelNames, Counter::new);
+    }
+
+    @NotNull
+    public MetricFamily<Gauge> gauge(@NotNull String name, @NotNull String help, @NotNull String... labelNames) {
+        return family(name, help, MetricType.GAUGE, labelNames, Gauge::new);
+    }
+
+    @NotNull
+    public MetricFamily<Histogram> histogram(@NotNull String name, @NotNull String help, @NotNull double[] upperBounds,
+                                             @NotNull String... labelNames) {
+        return family(name, help, MetricType.HISTOGRAM, labelNames, () -> new Histogram(upperBounds));
+    }
+
+    /**
+     * Значение читается из {@code source} при каждом запросе метрик. Повторная регистрация заменяет источник
+     */
+    public void gaugeFunction(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier source) {
+        register(name, help, MetricType.GAUGE, source);
+    }
+
+    /**
+     * Как {@link #gaugeFunction}, для счетчиков, которые ведет сам источник
+     */
+    public void counterFunction(@NotNull String name, @NotNull String help, @NotNull LongSupplier source) {
+        register(name, help, MetricType.COUNTER, (DoubleSupplier) source::getAsLong);
+    }
+
+    /**
+     * Все метрики в текстовом формате Prometheus, по алфавиту имен
+     */
+    @NotNull
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (MetricFamily<?> family : families.values()) {
+            out.append("# HELP ").append(family.name()).append(' ').append(escapeHelp(family.help())).append('\n');
+            out.append("# TYPE ").append(family.name()).append(' ').append(family.type().exposedName()).append('\n');
+            for (Map.Entry<List<String>, ?> child : family.children().entrySet()) {
+                writeChild(out, family, child.getKey(), child.getValue());
+            }
+        }
+        return out.toString();
+    }
+
+    private void register(String name, String help, MetricType type, DoubleSupplier source) {
+        MetricFamily<DoubleSupplier> family = new MetricFamily<>(name, help, type, List.of(), () -> source);
+        family.labels();
+        families.put(name, family);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> MetricFamily<T> family(String name, String help, MetricType type, String[] labelNames, Supplier<T> factory) {
+        MetricFamily<?> family = families.computeIfAbsent(name,
+                key -> new MetricFamily<>(name, help, type, List.of(labelNames), factory));
+        Validate.isTrue(family.type() == type && family.labelNames().equals(List.of(labelNames)),
+                "Metric [%s] is already registered as %s with labels %s", name, family.type(), family.labelNames());
+        return (MetricFamily<T>) family;
+    }
+
+    private static void writeChild(StringBuilder out, MetricFamily<?> family, List<String> labelValues, Object child) {
+        if (child instanceof Histogram histogram) {
+            double[] upperBounds = histogram.upperBounds();
+            long[] counts = histogram.cumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                String le = i < upperBounds.length ? format(upperBounds[i]) : "+Inf";
+                writeSample(out, family.name() + "_bucket", family.labelNames(), labelValues, le, format(counts[i]));
+            }
+            writeSample(out, family.name() + "_sum", family.labelNames(), labelValues, null, format(histogram.sumSeconds()));
+            writeSample(out, family.name() + "_count", family.labelNames(), labelValues, null, format(counts[counts.length - 1]));
+            return;
+        }
+        String value;
+        if (child instanceof Counter counter) {
+            value = format(counter.get());
+        } else if (child instanceof Gauge gauge) {
+            value = format(gauge.get());
+        } else {
+            value = format(((DoubleSupplier) child).getAsDouble());
+        }
+        writeSample(out, family.name(), family.labelNames(), labelValues, null, value);
+    }
+
+    private static void writeSample(StringBuilder out, String name, List<String> labelNames, List<String> labelValues,
+                                    String le, String value) {
+        out.append(name);
+        if (!labelNames.isEmpty() || le != null) {
+            out.append('{');
+            for (int i = 0; i < labelNames.size(); i++) {
+                out.append(i == 0 ? "" : ",").append(labelNames.get(i)).append("=\"")
+                        .append(escapeLabelValue(labelValues.get(i))).append('"');
+            }
+            if (le != null) {
+                out.append(labelNames.isEmpty() ? "" : ",").append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,74 @@
+package org.main.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP-сервер JDK, который отдает {@link MetricsRegistry} по пути {@value #PATH}
+ */
+public class MetricsServer {
+
+    static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    public MetricsServer(@NotNull MetricsRegistry registry, int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, exchange -> respond(exchange, registry));
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @return {@code null}, если порт метрик не задан
+     */
+    @Nullable
+    public static MetricsServer fromProperties(@NotNull Properties properties, @NotNull MetricsRegistry registry) throws IOException {
+        String port = properties.getProperty(MetricsConfiguration.METRICS_PORT_PROPERTY);
+        if (port == null || port.isBlank()) {
+            return null;
+        }
+        return new MetricsServer(registry, Integer.parseInt(port.trim()));
+    }
+
+    public void start() {
+        server.start();
+        System.out.printf("Metrics server started on port %d%n", port());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.main.metrics;
+
+/**
+ * Метрики узла в {@link MetricsRegistry#DEFAULT}. Метрики, которые считают сами компоненты
+ * (длина цепочки, мемпул, кэш блоков), регистрируются этими компонентами как функции
+ */
+public final class NodeMetrics {
+
+    public static final Counter MINING_HASHES = MetricsRegistry.DEFAULT
+            .counter("node_mining_hashes_total", "Nonces tried by the miner").labels();
+    public static final Gauge MINING_HASH_RATE = MetricsRegistry.DEFAULT
+            .gauge("node_mining_hash_rate", "Hashes per second of the last mining run on all workers").labels();
+    public static final Counter MINING_ATTEMPTS = MetricsRegistry.DEFAULT
+            .counter("node_mining_attempts_total", "Blocks the miner started to mine").labels();
+    public static final Counter MINING_ABORTS = MetricsRegistry.DEFAULT
+            .counter("node_mining_aborts_total", "Mining runs abandoned because the chain tip has moved").labels();
+    public static final Counter BLOCKS_MINED = MetricsRegistry.DEFAULT
+            .counter("node_blocks_mined_total", "Blocks mined by this node").labels();
+
+    public static final Histogram BLOCK_ADD_SECONDS = MetricsRegistry.DEFAULT
+            .histogram("node_block_add_seconds", "Time to validate and append a block to the main chain",
+                    Histogram.LATENCY_BUCKETS).labels();
+    public static final Histogram CHAIN_VALIDATION_SECONDS = MetricsRegistry.DEFAULT
+            .histogram("node_chain_validation_seconds", "Time of a full chain validation",
+                    Histogram.LATENCY_BUCKETS, "mode").labels("links");
+    public static final Histogram CHAIN_AUDIT_SECONDS = MetricsRegistry.DEFAULT
+            .histogram("node_chain_validation_seconds", "Time of a full chain validation",
+                    Histogram.LATENCY_BUCKETS, "mode").labels("audit");
+    public static final Histogram CHAIN_LOCK_WAIT_SECONDS = MetricsRegistry.DEFAULT
+            .histogram("node_chain_lock_wait_seconds", "Time spent waiting for the chain lock",
+                    Histogram.LATENCY_BUCKETS).labels();
+
+    public static final Gauge SYNC_IN_PROGRESS = MetricsRegistry.DEFAULT
+            .gauge("node_sync_in_progress", "1 while the node loads the chain from the cluster").labels();
+    public static final Counter SYNC_BLOCKS = MetricsRegistry.DEFAULT
+            .counter("node_sync_blocks_total", "Blocks added while loading the chain from the cluster").labels();
+    public static final MetricFamily<Gauge> PEER_CHAIN_LENGTH = MetricsRegistry.DEFAULT
+            .gauge("node_peer_chain_length", "Chain length reported by the last heartbeat of a peer", "peer");
+
+    public static final MetricFamily<Histogram> RPC_CLIENT_SECONDS = MetricsRegistry.DEFAULT
+            .histogram("node_rpc_client_seconds", "Latency of unary, server streaming and gossip stream calls to peers",
+                    Histogram.LATENCY_BUCKETS, "peer", "method");
+    public static final MetricFamily<Counter> RPC_CLIENT_ERRORS = MetricsRegistry.DEFAULT
+            .counter("node_rpc_client_errors_total", "Calls to peers finished with a non-OK status",
+                    "peer", "method", "code");
+
+    private NodeMetrics() {
+    }
+}
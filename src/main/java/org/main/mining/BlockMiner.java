@@ -0,0 +1,157 @@
+package org.main.mining;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.BlockGenerationUtils;
+import org.main.metrics.NodeMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Перебор nonce в несколько потоков: воркер {@code i} проверяет nonce {@code i + 1, i + 1 + workers, ...}.
+ * Первый найденный nonce останавливает остальных воркеров.
+ */
+public class BlockMiner {
+
+    private final int workers;
+    @Nullable
+    private final ExecutorService pool; // single worker mines on the calling thread
+
+    private volatile List<WorkerStats> lastStats = List.of();
+
+    public BlockMiner(int workers) {
+        Validate.isTrue(workers > 0, "Mining workers amount should be positive: %d", workers);
+        this.workers = workers;
+        this.pool = workers == 1 ? null : Executors.newFixedThreadPool(workers, new MinerThreadFactory());
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Статистика последнего запуска {@link #mine}, по одной записи на воркера
+     */
+    @NotNull
+    public List<WorkerStats> getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * @return найденный nonce с хешем или {@code null}, если перебор был остановлен {@code stopCondition}
+     */
+    @Nullable
+    public MiningResult mine(@NotNull String text, @NotNull BooleanSupplier stopCondition) {
+        return mine(text, BlockGenerationUtils.INITIAL_DIFFICULTY, stopCondition);
+    }
+
+    /**
+     * @param difficulty ожидаемое число попыток, см. {@link PowHasher#meetsDifficulty(long, long)}
+     */
+    @Nullable
+    public MiningResult mine(@NotNull String text, long difficulty, @NotNull BooleanSupplier stopCondition) {
+        AtomicReference<MiningResult> result = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        List<WorkerStats> stats = new ArrayList<>(workers);
+        if (pool == null) {
+            stats.add(runWorker(0, text, difficulty, stopCondition, result, cancelled));
+        } else {
+            List<Callable<WorkerStats>> tasks = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                int workerId = i;
+                tasks.add(() -> runWorker(workerId, text, difficulty, stopCondition, result, cancelled));
+            }
+            try {
+                for (Future<WorkerStats> future : pool.invokeAll(tasks)) {
+                    stats.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                cancelled.set(true);
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Mining worker failed", e.getCause());
+            }
+        }
+
+        lastStats = List.copyOf(stats);
+        recordMetrics(lastStats);
+        return result.get();
+    }
+
+    private WorkerStats runWorker(int workerId,
+                                  String text,
+                                  long difficulty,
+                                  BooleanSupplier stopCondition,
+                                  AtomicReference<MiningResult> result,
+                                  AtomicBoolean cancelled) {
+        PowHasher hasher = new PowHasher(text, difficulty);
+        long startNanos = System.nanoTime();
+        long attempts = 0;
+        for (long nonce = workerId + 1L; ; nonce += workers) {
+            if (result.get() != null || cancelled.get()) {
+                break;
+            }
+            if (stopCondition.getAsBoolean()) {
+                cancelled.set(true); // stopping every worker, not only the current one
+                break;
+            }
+            attempts++;
+            if (hasher.tryNonce(nonce)) {
+                result.compareAndSet(null, new MiningResult(nonce, hasher.blockHash()));
+                break;
+            }
+        }
+        return new WorkerStats(workerId, attempts, System.nanoTime() - startNanos);
+    }
+
+    private static void recordMetrics(List<WorkerStats> stats) {
+        long attempts = 0;
+        double hashRate = 0;
+        for (WorkerStats workerStats : stats) {
+            attempts += workerStats.attempts();
+            hashRate += workerStats.hashesPerSecond();
+        }
+        NodeMetrics.MINING_HASHES.add(attempts);
+        NodeMetrics.MINING_HASH_RATE.set(hashRate);
+    }
+
+    /**
+     * Печатает статистику последнего запуска {@link #mine}
+     */
+    public void reportLastStats() {
+        List<WorkerStats> stats = lastStats;
+        double total = 0;
+        for (WorkerStats workerStats : stats) {
+            total += workerStats.hashesPerSecond();
+            System.out.printf("Mining worker [%d]: attempts: [%d]; hash rate: [%.0f H/s]%n",
+                    workerStats.workerId(), workerStats.attempts(), workerStats.hashesPerSecond());
+        }
+        System.out.printf("Mining hash rate: [%.0f H/s] on [%d] workers%n", total, stats.size());
+    }
+
+    private static class MinerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "miner-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
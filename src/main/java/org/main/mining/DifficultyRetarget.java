@@ -0,0 +1,84 @@
+package org.main.mining;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+import org.main.entity.BlockHeader;
+
+import java.math.BigInteger;
+import java.util.Properties;
+
+/**
+ * Пересчет сложности каждые {@code window} блоков: блок с индексом, кратным {@code window}, получает сложность
+ * предыдущего блока, умноженную на отношение целевого времени окна к фактическому. Фактическое время берется
+ * по меткам времени первого и последнего блока окна и ограничивается в {@link #MAX_ADJUSTMENT} раз в обе стороны.
+ * Остальные блоки наследуют сложность родителя.
+ * <p>
+ * Параметры должны совпадать на всех узлах кластера, иначе узлы не примут блоки друг друга.
+ */
+public final class DifficultyRetarget {
+
+    static final int MAX_ADJUSTMENT = 4;
+    /**
+     * Ограничение сверху, чтобы накопленная работа длинной цепочки помещалась в long
+     */
+    static final long MAX_DIFFICULTY = 1L << 48;
+
+    private final long targetIntervalMillis;
+    private final int window;
+
+    public DifficultyRetarget(long targetIntervalMillis, int window) {
+        Validate.isTrue(targetIntervalMillis > 0, "Target block interval should be positive: %d", targetIntervalMillis);
+        Validate.isTrue(window >= 2, "Retarget window should be at least 2 blocks: %d", window);
+        this.targetIntervalMillis = targetIntervalMillis;
+        this.window = window;
+    }
+
+    @NotNull
+    public static DifficultyRetarget fromProperties(@NotNull Properties properties) {
+        return new DifficultyRetarget(
+                Long.parseLong(properties.getProperty(MiningConfiguration.TARGET_BLOCK_INTERVAL_MS_PROPERTY,
+                        String.valueOf(MiningConfiguration.DEFAULT_TARGET_BLOCK_INTERVAL_MS))),
+                Integer.parseInt(properties.getProperty(MiningConfiguration.RETARGET_WINDOW_PROPERTY,
+                        String.valueOf(MiningConfiguration.DEFAULT_RETARGET_WINDOW))));
+    }
+
+    /**
+     * Индекс первого блока окна, которое определяет сложность блока {@code index}, или {@code -1},
+     * если сложность блока наследуется от родителя
+     */
+    public long windowStart(long index) {
+        return index > 0 && index % window == 0 ? index - window : -1;
+    }
+
+    /**
+     * @param parent      родитель блока
+     * @param windowStart блок с индексом {@link #windowStart} на той же ветке, {@code null}, если пересчета нет
+     */
+    public long expectedDifficulty(@NotNull Block parent, @Nullable Block windowStart) {
+        if (windowStart == null || windowStart(parent.getIndex() + 1) < 0) {
+            return parent.getDifficulty();
+        }
+        return retarget(parent.getDifficulty(), parent.getTimestamp() - windowStart.getTimestamp());
+    }
+
+    /**
+     * То же по заголовкам, чтобы проверять сложность до загрузки тел блоков
+     */
+    public long expectedDifficulty(@NotNull BlockHeader parent, @Nullable BlockHeader windowStart) {
+        if (windowStart == null || windowStart(parent.index() + 1) < 0) {
+            return parent.difficulty();
+        }
+        return retarget(parent.difficulty(), parent.timestamp() - windowStart.timestamp());
+    }
+
+    private long retarget(long difficulty, long windowSpan) {
+        long targetSpan = targetIntervalMillis * (window - 1);
+        long actualSpan = Math.min(Math.max(windowSpan, targetSpan / MAX_ADJUSTMENT), targetSpan * MAX_ADJUSTMENT);
+        BigInteger next = BigInteger.valueOf(difficulty)
+                .multiply(BigInteger.valueOf(targetSpan))
+                .divide(BigInteger.valueOf(Math.max(actualSpan, 1)));
+        return Math.max(1L, next.min(BigInteger.valueOf(MAX_DIFFICULTY)).longValue());
+    }
+}
@@ -0,0 +1,20 @@
+package org.main.mining;
+
+public final class MiningConfiguration {
+
+    public static final String MINING_THREADS_PROPERTY = "mining_threads";
+    public static final String BLOCK_MAX_BYTES_PROPERTY = "block_max_bytes";
+
+    public static final String TARGET_BLOCK_INTERVAL_MS_PROPERTY = "target_block_interval_ms";
+    public static final String RETARGET_WINDOW_PROPERTY = "retarget_window";
+    public static final String MINING_DELAY_MIN_MS_PROPERTY = "mining_delay_min_ms";
+    public static final String MINING_DELAY_MAX_MS_PROPERTY = "mining_delay_max_ms";
+
+    public static final int DEFAULT_BLOCK_MAX_BYTES = 64 * 1024;
+    public static final long DEFAULT_TARGET_BLOCK_INTERVAL_MS = 10_000;
+    public static final int DEFAULT_RETARGET_WINDOW = 32;
+
+    private MiningConfiguration() {
+    }
+
+}
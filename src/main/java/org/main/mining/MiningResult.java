@@ -0,0 +1,6 @@
+package org.main.mining;
+
+import org.main.entity.BlockHash;
+
+public record MiningResult(long nonce, BlockHash hash) {
+}
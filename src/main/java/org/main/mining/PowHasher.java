@@ -0,0 +1,132 @@
+package org.main.mining;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.BlockHash;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Считает SHA-256 от {@code prefix + nonce}: префикс поглощается {@link MessageDigest} один раз, на каждую
+ * попытку копируется его состояние (midstate) и дописываются только цифры nonce, хеш пишется
+ * в переиспользуемый массив. Результат совпадает с {@link org.main.BlockGenerationUtils#calculateHash}.
+ * <p>
+ * Копия состояния дешевле повторного сжатия даже одного блока префикса, а заголовок блока занимает два-три
+ * блока SHA-256 (см. {@code MiningBenchmark.tryNonce}). Java-реализация сжатия не нужна: {@link MessageDigest}
+ * на x86 с SHA-NI в разы быстрее нее.
+ * <p>
+ * Экземпляр не потокобезопасен, каждый воркер создает свой.
+ */
+public final class PowHasher {
+
+    public static final int HASH_LENGTH = 32;
+
+    private static final int MAX_NONCE_LENGTH = 20; // "-9223372036854775808"
+
+    private final MessageDigest midstate;
+    private final byte[] buffer = new byte[MAX_NONCE_LENGTH];
+    private final byte[] hash = new byte[HASH_LENGTH];
+    private final long difficulty;
+
+    /**
+     * @param difficulty ожидаемое число попыток, см. {@link #meetsDifficulty(long, long)}
+     */
+    public PowHasher(@NotNull String prefix, long difficulty) {
+        Validate.isTrue(difficulty > 0, "Difficulty should be positive: %d", difficulty);
+        this.difficulty = difficulty;
+        this.midstate = newDigest();
+        midstate.update(prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return {@code true}, если хеш для {@code nonce} удовлетворяет сложности
+     */
+    public boolean tryNonce(long nonce) {
+        digest(writeNonce(nonce));
+        return meetsDifficulty(lastWord(hash), difficulty);
+    }
+
+    /**
+     * Хеш последней попытки в hex, строится только по запросу
+     */
+    @NotNull
+    public String hashHex() {
+        return Hex.encodeHexString(hash);
+    }
+
+    /**
+     * Хеш последней попытки в бинарном виде
+     */
+    @NotNull
+    public BlockHash blockHash() {
+        return BlockHash.of(hash);
+    }
+
+    /**
+     * Хеш удовлетворяет сложности {@code difficulty}, если последние 64 бита хеша, прочитанные от младшего бита
+     * к старшему, меньше {@code 2^64 / difficulty}. Случайный хеш проходит с вероятностью {@code 1 / difficulty},
+     * поэтому сложность - ожидаемое число попыток и может быть любым положительным числом.
+     * Для {@code difficulty = 16^n} это ровно {@code n} нулевых hex-символов в конце хеша
+     *
+     * @param lastWord последние 8 байт хеша, big-endian
+     */
+    public static boolean meetsDifficulty(long lastWord, long difficulty) {
+        long value = Long.reverse(lastWord);
+        // value * difficulty < 2^64, that is the high word of the unsigned product is zero
+        long high = Math.multiplyHigh(value, difficulty) + ((value >> 63) & difficulty) + ((difficulty >> 63) & value);
+        return high == 0;
+    }
+
+    private static long lastWord(byte[] hash) {
+        long word = 0;
+        for (int i = hash.length - Long.BYTES; i < hash.length; i++) {
+            word = (word << 8) | (hash[i] & 0xFF);
+        }
+        return word;
+    }
+
+    /**
+     * Пишет десятичное представление nonce (как {@link Long#toString(long)}) в начало буфера
+     *
+     * @return длина данных в буфере
+     */
+    private int writeNonce(long nonce) {
+        int position = 0;
+        long remainder = nonce > 0 ? -nonce : nonce; // negative range also covers Long.MIN_VALUE
+        if (nonce < 0) {
+            buffer[position++] = '-';
+        }
+        int digits = 1;
+        for (long rest = remainder; rest <= -10; rest /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' - remainder % 10);
+            remainder /= 10;
+        }
+        return end;
+    }
+
+    private void digest(int length) {
+        try {
+            MessageDigest messageDigest = (MessageDigest) midstate.clone();
+            messageDigest.update(buffer, 0, length);
+            messageDigest.digest(hash, 0, HASH_LENGTH);
+        } catch (CloneNotSupportedException | DigestException e) {
+            throw new IllegalStateException(e); // SHA-256 digests are cloneable, buffer always fits the output
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
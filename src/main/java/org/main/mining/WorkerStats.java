@@ -0,0 +1,13 @@
+package org.main.mining;
+
+import java.util.concurrent.TimeUnit;
+
+public record WorkerStats(int workerId, long attempts, long elapsedNanos) {
+
+    public double hashesPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return attempts * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
@@ -0,0 +1,24 @@
+package org.main.state;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @param firstInvalidIndex    индекс первого невалидного блока или {@link #NO_INVALID_BLOCK}
+ * @param firstInvalidPosition позиция первого невалидного блока в проверенном списке или {@link #NO_INVALID_POSITION}
+ */
+public record AuditResult(long firstInvalidIndex, int firstInvalidPosition, int blocksChecked, long elapsedNanos) {
+
+    public static final long NO_INVALID_BLOCK = -1L;
+    public static final int NO_INVALID_POSITION = -1;
+
+    public boolean isValid() {
+        return firstInvalidIndex == NO_INVALID_BLOCK;
+    }
+
+    public double blocksPerSecond() {
+        if (elapsedNanos <= 0) {
+            return 0;
+        }
+        return blocksChecked * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
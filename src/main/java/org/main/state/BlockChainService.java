@@ -5,157 +5,863 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.main.BlockGenerationUtils;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.entity.BlockHeader;
 import org.main.exception.ChainValidationException;
 import org.main.grpc.RpcClient;
+import org.main.grpc.entity.BlockAnnouncement;
 import org.main.grpc.entity.GetBlockChainResponse;
 import org.main.grpc.entity.MinedBlockRequest;
 import org.main.grpc.entity.MinedBlockResponse;
 import org.main.grpc.entity.MinedBlockResponseCode;
-
+import org.main.mempool.BlockPayload;
+import org.main.mempool.Mempool;
+import org.main.mempool.MempoolConfiguration;
+import org.main.mempool.SubmitResult;
+import org.main.merkle.InclusionProof;
+import org.main.merkle.MerkleTree;
+import org.main.metrics.MetricsRegistry;
+import org.main.metrics.NodeMetrics;
+import org.main.mining.BlockMiner;
+import org.main.mining.DifficultyRetarget;
+import org.main.mining.MiningConfiguration;
+import org.main.storage.BlockHashIndex;
+import org.main.storage.BlockLog;
+import org.main.storage.BlockStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 public class BlockChainService {
 
     /**
+     * Обязательно использовать под {@link BlockChainService#lock}, чтение без лока - через {@link #chain}
+     */
+    protected final BlockStore blocks;
+    /**
+     * Снимок {@link #blocks}, публикуется после каждого изменения под локом. Чтение цепочки идет только
+     * через снимок и не ждет писателей
+     */
+    private final AtomicReference<ChainSnapshot> chain = new AtomicReference<>(ChainSnapshot.EMPTY);
+    /**
+     * Боковые ветки, сироты и накопленная работа основной цепочки.
      * Обязательно использовать под {@link BlockChainService#lock}
      */
-    protected final List<Block> blocks;
+    private final BlockTree tree = new BlockTree();
+    /**
+     * Позиции блоков основной цепочки по хешу, меняется вместе с {@link #blocks}
+     */
+    private final BlockHashIndex hashIndex = new BlockHashIndex();
+    private final List<ChainListener> listeners = new CopyOnWriteArrayList<>();
     private final ExecutorService mainWorker;
     private final RpcClient rpcClient;
+    private final BlockMiner miner;
+    private final Mempool mempool;
+    private final int blockMaxBytes;
+    private final DifficultyRetarget retarget;
+    private final ChainAuditor chainAuditor;
+    private final MiningScheduler miningScheduler;
 
     private final ReentrantLock lock = new ReentrantLock(true);
-    private final AtomicInteger blockRequestsIncoming = new AtomicInteger(0);
+    /**
+     * Индекс в {@link BlockChainService#blocks}, до которого связи уже проверены.
+     * Обязательно использовать под {@link BlockChainService#lock}
+     */
+    private int validatedUpTo = -1;
     private final boolean generateGenesis;
+    @Nullable
+    private final BlockLog blockLog;
+    private boolean replayedFromLog;
 
     public BlockChainService(boolean generateGenesis, RpcClient rpcClient) {
-        this.blocks = new ArrayList<>();
+        this(generateGenesis, rpcClient, new Properties());
+    }
+
+    public BlockChainService(boolean generateGenesis, RpcClient rpcClient, Properties properties) {
+        this(generateGenesis, rpcClient, properties, null);
+    }
+
+    public BlockChainService(boolean generateGenesis, RpcClient rpcClient, Properties properties, @Nullable BlockLog blockLog) {
+        this.blocks = BlockStore.fromProperties(properties);
+        this.blockLog = blockLog;
         this.mainWorker = Executors.newSingleThreadExecutor();
         this.rpcClient = rpcClient;
         this.generateGenesis = generateGenesis;
+        int miningThreads = Integer.parseInt(properties.getProperty(MiningConfiguration.MINING_THREADS_PROPERTY,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.miner = new BlockMiner(miningThreads);
+        this.retarget = DifficultyRetarget.fromProperties(properties);
+        this.chainAuditor = new ChainAuditor(ForkJoinPool.commonPool(), retarget);
+        this.miningScheduler = MiningScheduler.fromProperties(chain::get, properties);
+        this.mempool = new Mempool(Long.parseLong(properties.getProperty(MempoolConfiguration.MEMPOOL_MAX_BYTES_PROPERTY,
+                String.valueOf(MempoolConfiguration.DEFAULT_MEMPOOL_MAX_BYTES))));
+        this.blockMaxBytes = Integer.parseInt(properties.getProperty(MiningConfiguration.BLOCK_MAX_BYTES_PROPERTY,
+                String.valueOf(MiningConfiguration.DEFAULT_BLOCK_MAX_BYTES)));
+        listeners.add(new ChainListener() {
+            @Override
+            public void onAppended(@NotNull Block block) {
+                mempool.removeIncluded(BlockPayload.decode(block.getData()));
+            }
 
-        if (generateGenesis) {
-            Block genesis = BlockGenerationUtils.generateGenesis();
-            blocks.add(genesis);
+            @Override
+            public void onTruncated(long fromIndex) {
+                // called before the blocks are removed
+                List<String> excluded = new ArrayList<>();
+                for (int position = positionOf(fromIndex); position >= 0 && position < blocks.size(); position++) {
+                    excluded.addAll(BlockPayload.decode(blocks.get(position).getData()));
+                }
+                mempool.restore(excluded);
+            }
+        });
+        MetricsRegistry.DEFAULT.gaugeFunction("node_chain_length", "Blocks in the main chain", this::chainSize);
+        MetricsRegistry.DEFAULT.gaugeFunction("node_mempool_entries", "Entries waiting in the mempool", mempool::size);
+        MetricsRegistry.DEFAULT.gaugeFunction("node_mempool_bytes", "Memory taken by the mempool entries", mempool::bytes);
+
+        if (blockLog != null && blockLog.size() > 0) {
+            replayFromLog(blockLog);
+        } else if (generateGenesis) {
+            Block genesis = BlockGenerationUtils.generateGenesis(miner);
+            storeBlock(genesis);
+            publish();
+            appendToLog(genesis);
         }
     }
 
     public void start() {
-        if (!generateGenesis) {
-            loadBlockchainFromCluster(0); // whole blockchain
+        if (!generateGenesis || replayedFromLog) {
+            syncAndAudit();
         }
         mainWorker.submit(new BlockChainMainWorker());
         System.out.println("Blockchain started...");
     }
 
+    /**
+     * Загружает цепочку из кластера и проверяет ее целиком вместе с доказательством работы. Цепочка
+     * обрезается до первого невалидного блока и загружается заново с этого места; если и после этого
+     * проверка не проходит, остается только валидный префикс, поэтому майнинг и раздача блоков
+     * никогда не идут поверх невалидной цепочки
+     */
+    @VisibleForTesting
+    void syncAndAudit() {
+        loadBlockchainFromCluster(blocks.size()); // whole blockchain or the tail missing in local storage
+        AuditResult result = auditChain(true);
+        if (result.isValid()) {
+            return;
+        }
+        System.out.printf("Chain is invalid from block with index: [%d], syncing it again from this block%n",
+                result.firstInvalidIndex());
+        dropFrom(result.firstInvalidPosition());
+        loadBlockchainFromCluster(result.firstInvalidPosition());
+        result = auditChain(true);
+        if (!result.isValid()) {
+            System.out.printf("Chain is still invalid from block with index: [%d], keeping [%d] valid blocks%n",
+                    result.firstInvalidIndex(), result.firstInvalidPosition());
+            dropFrom(result.firstInvalidPosition());
+        }
+    }
+
+    private void dropFrom(int position) {
+        lockChain();
+        try {
+            truncate(position);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @VisibleForTesting
     protected void loadBlockchainFromCluster(long fromIndex) {
         System.out.printf("Trying to get blockchain from index: [%d] from cluster...%n", fromIndex);
 
-        lock.lock();
+        lockChain();
+        NodeMetrics.SYNC_IN_PROGRESS.set(1);
         try {
+            int sizeBefore = blocks.size();
+            // headers first, then ranges from several peers, then a stream from one peer, then a single response;
+            // each next way continues from the blocks already received by the previous one
+            if (syncHeadersFirst(fromIndex)
+                    || rpcClient.syncBlockchainInRanges(Math.max(fromIndex, blocks.size()), this::addChunk)
+                    || rpcClient.streamBlockchain(Math.max(fromIndex, blocks.size()), this::addChunk)) {
+                System.out.printf("Successfully added [%d] blocks from cluster stream%n", blocks.size() - sizeBefore);
+                return;
+            }
+            fromIndex = Math.max(fromIndex, blocks.size());
             GetBlockChainResponse blockChainResponse = rpcClient.getBlockchain(fromIndex);
             List<Block> receivedBlockchain = blockChainResponse.blockChain();
             if (receivedBlockchain.isEmpty()) {
                 return;
             }
 
-            for (Block block : blockChainResponse.blockChain()) {
-                add(block);
+            if (addChunk(receivedBlockchain)) {
+                System.out.printf("Successfully added [%d] blocks from cluster%n", receivedBlockchain.size());
             }
-            System.out.printf("Successfully added [%d] blocks from cluster%n", receivedBlockchain.size());
-        } catch (ChainValidationException e) {
-            throw new RuntimeException(e); // TODO
         } finally {
+            NodeMetrics.SYNC_IN_PROGRESS.set(0);
             lock.unlock();
         }
     }
 
+    /**
+     * Сначала загружает заголовки и проверяет связи, сложность по графику пересчета и пересчитанный хеш каждого
+     * заголовка, не загружая {@code data}. Затем параллельно загружает тела блоков только для проверенных
+     * заголовков; тело сверяется с заголовком и пересчетом хеша.
+     * <p>
+     * Если ветка узлов расходится с основной цепочкой ниже вершины, ее блоки подключаются как боковая ветка,
+     * и цепочка переключается на нее, когда ветка наберет больше работы
+     *
+     * @return {@code false}, если узлы не отдают заголовки или тела удалось загрузить не полностью
+     */
+    private boolean syncHeadersFirst(long fromIndex) {
+        List<BlockHeader> headers = headersFromForkPoint(fromIndex);
+        if (headers == null) {
+            return false;
+        }
+        if (headers.isEmpty()) {
+            return true; // the main chain already has every block of the peers
+        }
+        long parentIndex = headers.get(0).index() - 1;
+        BlockHeader parent = blocks.isEmpty() ? null : BlockHeader.of(blocks.get(positionOf(parentIndex)));
+        int validHeaders = countValidHeaders(parent, headers);
+        if (validHeaders < headers.size()) {
+            System.out.printf("Header chain is broken at index: [%d], dropping [%d] headers%n",
+                    headers.get(validHeaders).index(), headers.size() - validHeaders);
+        }
+        if (parent == null || Objects.equals(parent.hash(), tipHash())) {
+            return rpcClient.fetchBodies(headers.subList(0, validHeaders), this::appendChunk); // bodies are re-hashed by fetchBodies
+        }
+        System.out.printf("Chain of the cluster forks from the local chain after index: [%d]%n", parentIndex);
+        return rpcClient.fetchBodies(headers.subList(0, validHeaders), this::connectChunk);
+    }
+
+    /**
+     * Заголовки ветки узлов после последнего общего с основной цепочкой блока. Если первый новый заголовок
+     * не стыкуется с основной цепочкой, заголовки запрашиваются со все более ранних индексов, но не глубже
+     * {@link BlockTree#MAX_FORK_DEPTH} блоков от вершины: более глубокая боковая ветка все равно не хранится
+     *
+     * @return {@code null}, если узлы не отдают заголовки или общий блок не найден
+     */
+    @Nullable
+    private List<BlockHeader> headersFromForkPoint(long fromIndex) {
+        long startIndex = fromIndex;
+        long step = 1;
+        while (true) {
+            List<BlockHeader> headers = rpcClient.getHeaders(startIndex);
+            if (headers == null || headers.isEmpty()) {
+                return null;
+            }
+            int known = 0;
+            while (known < headers.size() && isOnMainChain(headers.get(known).index(), headers.get(known).hash())) {
+                known++;
+            }
+            List<BlockHeader> unknown = headers.subList(known, headers.size());
+            if (blocks.isEmpty() || unknown.isEmpty() || isOnMainChain(unknown.get(0).index() - 1, unknown.get(0).prevHash())) {
+                return unknown;
+            }
+            long lowestIndex = Math.max(blocks.get(0).getIndex(), blocks.get(blocks.size() - 1).getIndex() - BlockTree.MAX_FORK_DEPTH);
+            if (startIndex <= lowestIndex) {
+                System.out.printf("Chain of the cluster has no common block with the local chain after index: [%d]%n",
+                        lowestIndex);
+                return null;
+            }
+            startIndex = Math.max(lowestIndex, startIndex - step);
+            step *= 2;
+        }
+    }
+
+    private boolean isOnMainChain(long index, @Nullable BlockHash hash) {
+        int position = blocks.isEmpty() ? -1 : positionOf(index);
+        return position >= 0 && position < blocks.size() && Objects.equals(blocks.get(position).getBlockHash(), hash);
+    }
+
+    /**
+     * @param parent блок основной цепочки, с которым стыкуется первый заголовок, {@code null} для пустой цепочки
+     * @return длина префикса заголовков, который стыкуется с {@code parent}, имеет ожидаемую сложность
+     * и хеши которого совпадают с пересчитанными
+     */
+    private int countValidHeaders(@Nullable BlockHeader parent, List<BlockHeader> headers) {
+        BlockHeader prevHeader = parent;
+        for (int i = 0; i < headers.size(); i++) {
+            BlockHeader header = headers.get(i);
+            boolean linked = prevHeader == null
+                    || ChainAuditor.isValidLink(prevHeader, header) && hasExpectedDifficulty(prevHeader, header, headers);
+            if (!linked || !BlockGenerationUtils.isHeaderHashValid(header)) {
+                return i;
+            }
+            prevHeader = header;
+        }
+        return headers.size();
+    }
+
+    /**
+     * То же, что {@link #hasExpectedDifficulty(Block, Block)}, для заголовков: начало окна пересчета ищется
+     * среди заголовков, а до первого из них - в основной цепочке, к вершине которой они стыкуются
+     */
+    private boolean hasExpectedDifficulty(BlockHeader parent, BlockHeader header, List<BlockHeader> headers) {
+        long windowStartIndex = retarget.windowStart(header.index());
+        BlockHeader windowStart = null;
+        if (windowStartIndex >= headers.get(0).index()) {
+            windowStart = headers.get((int) (windowStartIndex - headers.get(0).index()));
+        } else if (windowStartIndex >= 0) {
+            int position = blocks.isEmpty() ? -1 : positionOf(windowStartIndex);
+            if (position < 0 || position >= blocks.size()) {
+                return true;
+            }
+            windowStart = BlockHeader.of(blocks.get(position));
+        }
+        return header.difficulty() == retarget.expectedDifficulty(parent, windowStart);
+    }
+
+    /**
+     * Проверяет и добавляет очередную порцию или отрезок синхронизации. Хеш каждого блока пересчитывается
+     * до добавления порции
+     *
+     * @return {@code false}, если порция не стыкуется с цепочкой или не прошла проверку работы и поток нужно прервать
+     */
+    private boolean addChunk(List<Block> chunk) {
+        for (Block block : chunk) {
+            if (!BlockGenerationUtils.isBlockHashValid(block)) {
+                System.out.printf("Streamed chain is rejected: block [%d] fails the proof of work check%n", block.getIndex());
+                return false;
+            }
+        }
+        return appendChunk(chunk);
+    }
+
+    /**
+     * Подключает порцию ветки, которая расходится с основной цепочкой, так же как полученные от узлов блоки
+     *
+     * @return {@code false}, если блок порции отклонен
+     */
+    private boolean connectChunk(List<Block> chunk) {
+        for (Block block : chunk) {
+            connect(block);
+            if (!chain.get().contains(block.getIndex(), block.getBlockHash()) && tree.side(block.getBlockHash()) == null) {
+                System.out.printf("Forked chain is rejected at block with index: [%d]%n", block.getIndex());
+                return false;
+            }
+            NodeMetrics.SYNC_BLOCKS.inc();
+        }
+        return true;
+    }
+
+    /**
+     * Добавляет порцию, доказательство работы которой уже проверено
+     */
+    private boolean appendChunk(List<Block> chunk) {
+        try {
+            for (Block block : chunk) {
+                add(block);
+                NodeMetrics.SYNC_BLOCKS.inc();
+            }
+            return true;
+        } catch (ChainValidationException e) {
+            System.out.printf("Streamed chain is rejected: %s%n", e.getMessage());
+            return false;
+        }
+    }
+
+    public void addListener(@NotNull ChainListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Принимает записи в мемпул, из которого собираются следующие блоки. Лок цепочки не берется
+     */
+    @NotNull
+    public SubmitResult submitEntries(@NotNull List<String> entries) {
+        return mempool.addAll(entries);
+    }
+
     public long chainSize() {
-        return blocks.size();
+        return chain.get().size();
     }
 
     public List<Block> getBlockChain(long fromIndex) {
-        return ImmutableList.copyOf(blocks.subList((int) fromIndex, blocks.size()));
+        List<Block> snapshot = chain.get().blocks();
+        return ImmutableList.copyOf(snapshot.subList((int) fromIndex, snapshot.size()));
+    }
+
+    /**
+     * Блоки {@code [fromIndex, toIndex)}, обрезанные по текущей длине цепочки
+     */
+    public List<Block> getBlockChain(long fromIndex, long toIndex) {
+        return ImmutableList.copyOf(chain.get().range(fromIndex, toIndex));
+    }
+
+    /**
+     * Другой узел объявил блок. Отправитель запоминается как узел, у которого блок уже есть
+     *
+     * @return {@code true}, если блока нет в основной цепочке и нужно запросить его тело
+     */
+    public boolean onBlockAnnounced(BlockAnnouncement announcement) {
+        rpcClient.markKnown(announcement.sender(), announcement.hash());
+        if (chain.get().contains(announcement.index(), announcement.hash())) {
+            System.out.printf("Block with index [%d] is already in the chain. Body is not requested...%n", announcement.index());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return блок основной цепочки с хешем {@code hash} или {@code null}
+     */
+    @Nullable
+    public Block getBlockByHash(@NotNull BlockHash hash) {
+        ChainSnapshot snapshot = chain.get();
+        int position = hashIndex.get(hash);
+        if (position == BlockHashIndex.NOT_FOUND || position >= snapshot.size()) {
+            return null; // the index may be ahead of the published snapshot
+        }
+        Block block = snapshot.blocks().get(position);
+        return hash.equals(block.getBlockHash()) ? block : null;
+    }
+
+    /**
+     * @return блок основной цепочки с индексом {@code index} или {@code null}
+     */
+    @Nullable
+    public Block getBlockByIndex(long index) {
+        return chain.get().blockAt(index);
+    }
+
+    /**
+     * Доказательство включения записи {@code entry} в блок основной цепочки с индексом {@code index}
+     *
+     * @return {@code null}, если такого блока или записи в нем нет
+     */
+    @Nullable
+    public InclusionProof getInclusionProof(long index, @NotNull String entry) {
+        Block block = getBlockByIndex(index);
+        if (block == null) {
+            return null;
+        }
+        List<String> entries = BlockPayload.decode(block.getData());
+        int leafIndex = entries.indexOf(entry);
+        if (leafIndex < 0) {
+            return null;
+        }
+        return new InclusionProof(BlockHeader.of(block), entry, leafIndex, entries.size(),
+                MerkleTree.auditPath(entries, leafIndex));
     }
 
     public boolean onBlockRequestReceived(MinedBlockRequest request) {
         return onBlockReceived(request.block());
     }
 
+    /**
+     * Блок подключается к дереву блоков: продлевает основную цепочку, встает в боковую ветку или ждет родителя
+     * в пуле сирот. Если боковая ветка набрала больше работы, чем основная цепочка, происходит переключение на нее.
+     * Лок держится только на время подключения, майнинг его не занимает, поэтому время принятия блока
+     * не зависит от длительности майнинга. Хеш блока пересчитывается до подключения, поэтому ни сироты,
+     * ни боковые ветки не содержат блоков без доказательства работы
+     *
+     * @return {@code true}, если блок оказался в основной цепочке
+     */
     public boolean onBlockReceived(Block block) {
+        if (chain.get().contains(block.getIndex(), block.getBlockHash())) {
+            System.out.printf("Block with index [%d] is already mined. Rejected...%n", block.getIndex());
+            return false;
+        }
+        lockChain();
         try {
-            long blockIndex = block.getIndex();
-            if (blocks.size() - 1 >= blockIndex) {
-                System.out.printf("Block with index [%d] is already mined. Rejected...%n", blockIndex);
+            return connect(block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean connect(Block block) {
+        BlockHash hash = block.getBlockHash();
+        if (hash == null || tree.isKnown(hash) || chain.get().contains(block.getIndex(), hash)) {
+            System.out.printf("Block with index [%d] is already known or has no hash. Rejected...%n", block.getIndex());
+            return false;
+        }
+        if (!BlockGenerationUtils.isBlockHashValid(block)) {
+            // checked before the block can become an orphan or a side block and count as work of a branch
+            System.out.printf("Block with index [%d] fails the proof of work check. Rejected...%n", block.getIndex());
+            return false;
+        }
+        int sizeBefore = blocks.size();
+        BlockHash tipBefore = tipHash();
+        try {
+            Deque<Block> pending = new ArrayDeque<>();
+            pending.add(block);
+            while (!pending.isEmpty()) {
+                Block next = pending.poll();
+                if (attach(next)) {
+                    pending.addAll(tree.takeOrphans(next.getBlockHash()));
+                }
+            }
+        } catch (ChainValidationException e) {
+            System.out.printf("Block with index [%d] is rejected: %s%n", block.getIndex(), e.getMessage());
+        } finally {
+            // side, orphan and rejected blocks leave the main chain as is: the miner and its pacing keep running
+            if (blocks.size() != sizeBefore || !Objects.equals(tipHash(), tipBefore)) {
+                publish();
+            }
+            tree.prune(chainSize() - 1);
+        }
+        return chain.get().contains(block.getIndex(), hash);
+    }
+
+    /**
+     * @return {@code false}, если блок отклонен или отложен в пул сирот
+     */
+    private boolean attach(Block block) throws ChainValidationException {
+        if (blocks.isEmpty()) {
+            appendBlock(block);
+            System.out.printf("Added received block with index: [%d]%n", block.getIndex());
+            return true;
+        }
+        Block tip = blocks.get(blocks.size() - 1);
+        if (Objects.equals(tip.getBlockHash(), block.getPrevBlockHash())) {
+            if (!ChainAuditor.isValidLink(tip, block)) {
+                System.out.printf("Block with index [%d] doesn't link to the tip. Rejected...%n", block.getIndex());
                 return false;
             }
-            blockRequestsIncoming.incrementAndGet();
-            lock.lock();
-            try {
-                add(block);
-                System.out.printf("Added received block with index: [%d]%n", block.getIndex());
+            appendBlock(block);
+            System.out.printf("Added received block with index: [%d]%n", block.getIndex());
+            return true;
+        }
+
+        Block parent;
+        long parentWork;
+        int parentPosition = positionOf(block.getIndex() - 1);
+        BlockTree.SideBlock sideParent = tree.side(block.getPrevBlockHash());
+        if (parentPosition >= 0 && parentPosition < blocks.size() && Objects.equals(blocks.get(parentPosition).getBlockHash(), block.getPrevBlockHash())) {
+            parent = blocks.get(parentPosition);
+            parentWork = tree.workAt(parentPosition);
+        } else if (sideParent != null) {
+            parent = sideParent.block();
+            parentWork = sideParent.cumulativeWork();
+        } else {
+            tree.addOrphan(block);
+            System.out.printf("Parent of block with index [%d] is unknown. Block is kept as orphan, orphans: [%d]%n",
+                    block.getIndex(), tree.orphanSize());
+            return false;
+        }
+        if (!ChainAuditor.isValidLink(parent, block)) {
+            System.out.printf("Block with index [%d] doesn't link to its parent. Rejected...%n", block.getIndex());
+            return false;
+        }
+        if (!hasExpectedDifficulty(parent, block)) {
+            System.out.printf("Block with index [%d] has unexpected difficulty [%d]. Rejected...%n",
+                    block.getIndex(), block.getDifficulty());
+            return false;
+        }
+
+        BlockTree.SideBlock side = tree.addSide(block, parentWork + BlockTree.work(block));
+        if (side.cumulativeWork() > tree.tipWork()) {
+            reorganize(side);
+        } else {
+            System.out.printf("Block with index [%d] is added to a side branch, side blocks: [%d]%n",
+                    block.getIndex(), tree.sideSize());
+        }
+        return true;
+    }
+
+    /**
+     * Переключается на боковую ветку с вершиной {@code newTip}: отматывает только расходящийся хвост
+     * основной цепочки, убирая его в боковые ветки, и дописывает блоки ветки
+     */
+    private void reorganize(BlockTree.SideBlock newTip) throws ChainValidationException {
+        Deque<Block> branch = new ArrayDeque<>();
+        Block first = newTip.block();
+        branch.addFirst(first);
+        BlockTree.SideBlock parent;
+        while ((parent = tree.side(first.getPrevBlockHash())) != null) {
+            first = parent.block();
+            branch.addFirst(first);
+        }
+        int forkSize = positionOf(first.getIndex());
+        if (forkSize <= 0 || !Objects.equals(blocks.get(forkSize - 1).getBlockHash(), first.getPrevBlockHash())) {
+            System.out.printf("Branch with tip index [%d] is detached from the chain. Dropped...%n", newTip.block().getIndex());
+            branch.forEach(block -> tree.removeSide(block.getBlockHash()));
+            return;
+        }
+
+        int droppedBlocks = blocks.size() - forkSize;
+        for (int position = forkSize; position < blocks.size(); position++) {
+            tree.addSide(blocks.get(position), tree.workAt(position));
+        }
+        rewind(forkSize);
+        for (Block block : branch) {
+            tree.removeSide(block.getBlockHash());
+            appendBlock(block);
+        }
+        System.out.printf("Chain is reorganized at index [%d]: dropped [%d] blocks, added [%d] blocks%n",
+                first.getIndex(), droppedBlocks, branch.size());
+    }
+
+    /**
+     * Сложность блока должна совпадать с пересчитанной по ветке его родителя. Если цепочка не доходит
+     * до начала окна пересчета, сложность не проверяется
+     */
+    private boolean hasExpectedDifficulty(Block parent, Block block) {
+        long windowStartIndex = retarget.windowStart(block.getIndex());
+        Block windowStart = null;
+        if (windowStartIndex >= 0) {
+            windowStart = ancestor(parent, windowStartIndex);
+            if (windowStart == null) {
                 return true;
-            } catch (ChainValidationException e) {
-                throw new RuntimeException(e); //TODO
-            } finally {
-                lock.unlock();
             }
-        } finally {
-            blockRequestsIncoming.decrementAndGet();
         }
+        return block.getDifficulty() == retarget.expectedDifficulty(parent, windowStart);
+    }
+
+    /**
+     * Предок блока {@code block} с индексом {@code index} на ветке этого блока или {@code null}, если он неизвестен
+     */
+    @Nullable
+    private Block ancestor(Block block, long index) {
+        Block current = block;
+        while (current.getIndex() > index) {
+            BlockTree.SideBlock parent = tree.side(current.getPrevBlockHash());
+            if (parent == null) {
+                break; // the rest of the branch is on the main chain
+            }
+            current = parent.block();
+        }
+        if (current.getIndex() == index) {
+            return current;
+        }
+        int position = positionOf(index);
+        return position >= 0 && position < blocks.size() ? blocks.get(position) : null;
     }
 
+    @Nullable
+    private BlockHash tipHash() {
+        return blocks.isEmpty() ? null : blocks.get(blocks.size() - 1).getBlockHash();
+    }
+
+    /**
+     * Позиция в основной цепочке блока с индексом {@code index} или {@code -1}, если такой позиции нет
+     */
+    private int positionOf(long index) {
+        long position = index - blocks.get(0).getIndex();
+        return position >= 0 && position <= blocks.size() ? (int) position : -1;
+    }
 
     @VisibleForTesting
     protected void addFailSafe(Block newBlock) {
-        blocks.add(newBlock);
+        storeBlock(newBlock); // watermark is not moved, the block will be validated by the next add or audit
+        publish();
     }
 
+    /**
+     * Проверяет только связи после {@link BlockChainService#validatedUpTo} и новую связь с вершиной цепочки,
+     * поэтому добавление блока стоит O(1), а не O(n)
+     */
     @VisibleForTesting
     protected boolean add(Block newBlock) throws ChainValidationException {
-        blocks.add(newBlock);
+        appendBlock(newBlock);
+        publish();
+        return true;
+    }
+
+    /**
+     * Добавление без публикации снимка, чтобы переключение ветки было видно читателям целиком
+     */
+    private void appendBlock(Block newBlock) throws ChainValidationException {
+        long startNanos = System.nanoTime();
+        validatePendingLinks();
+        if (!blocks.isEmpty()) {
+            Block lastBlock = blocks.get(blocks.size() - 1);
+            if (!ChainAuditor.isValidLink(lastBlock, newBlock)) {
+                throw new ChainValidationException(lastBlock.getIndex(), newBlock.getIndex());
+            }
+            if (!hasExpectedDifficulty(lastBlock, newBlock)) {
+                throw new ChainValidationException(String.format("Block [%d] has unexpected difficulty [%d]",
+                        newBlock.getIndex(), newBlock.getDifficulty()));
+            }
+        }
+        storeBlock(newBlock);
+        validatedUpTo = blocks.size() - 1;
+        appendToLog(newBlock);
+        NodeMetrics.BLOCK_ADD_SECONDS.observeSince(startNanos);
+    }
+
+    private void storeBlock(Block block) {
+        blocks.add(block);
+        tree.onAppended(block);
+        if (block.getBlockHash() != null) {
+            hashIndex.put(block.getBlockHash(), blocks.size() - 1);
+        }
+        listeners.forEach(listener -> listener.onAppended(block));
+    }
+
+    @VisibleForTesting
+    protected void truncate(int newSize) {
+        rewind(newSize);
+        publish();
+    }
+
+    private void rewind(int newSize) {
+        if (newSize < blocks.size()) {
+            long fromIndex = blocks.get(newSize).getIndex();
+            listeners.forEach(listener -> listener.onTruncated(fromIndex));
+        }
+        for (int position = newSize; position < blocks.size(); position++) {
+            BlockHash hash = blocks.get(position).getBlockHash();
+            if (hash != null) {
+                hashIndex.remove(hash);
+            }
+        }
+        blocks.truncate(newSize);
+        tree.onTruncated(newSize);
+        validatedUpTo = Math.min(validatedUpTo, newSize - 1);
+        if (blockLog != null) {
+            try {
+                blockLog.truncate(newSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает цепочку из локального лога. Проверяются только связи: целостность записей
+     * уже проверена по crc при открытии лога. Хвост после первой невалидной связи отбрасывается
+     */
+    private void replayFromLog(BlockLog blockLog) {
+        List<Block> replayed;
         try {
-            validateChains();
-        } catch (ChainValidationException e) {
-            blocks.remove(blocks.size() - 1); // добавленный блок "сломал" цепочку
-            throw new ChainValidationException(newBlock.getIndex() - 1, newBlock.getIndex());
+            replayed = blockLog.readAll();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        AuditResult result = chainAuditor.audit(replayed, false);
+        int validSize = result.isValid() ? replayed.size() : result.firstInvalidPosition();
+        replayed.subList(0, validSize).forEach(this::storeBlock);
+        validatedUpTo = validSize - 1;
+        publish();
+        if (validSize < replayed.size()) {
+            System.out.printf("Local storage is broken at block with index: [%d], dropping [%d] blocks%n",
+                    result.firstInvalidIndex(), replayed.size() - validSize);
+            truncate(validSize);
         }
+        replayedFromLog = true;
+        System.out.printf("Replayed [%d] blocks from local storage%n", validSize);
+    }
 
-        return true;
+    /**
+     * Публикует текущее состояние {@link #blocks}. Вызывать под {@link BlockChainService#lock} после каждого изменения
+     */
+    private void publish() {
+        chain.set(new ChainSnapshot(blocks.snapshot(0, blocks.size())));
+        miningScheduler.onPublished();
+    }
+
+    private void appendToLog(Block block) {
+        if (blockLog == null) {
+            return;
+        }
+        try {
+            blockLog.append(block);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Цепочка блоков не может быть невалидна больше чем на одну связь
+     * Полная параллельная проверка цепочки по запросу. Проверяется опубликованный снимок цепочки,
+     * лок берется только чтобы сдвинуть {@link BlockChainService#validatedUpTo}
+     */
+    @NotNull
+    public AuditResult auditChain(boolean checkProofOfWork) {
+        List<Block> snapshot = chain.get().blocks();
+
+        AuditResult result = chainAuditor.audit(snapshot, checkProofOfWork);
+        NodeMetrics.CHAIN_AUDIT_SECONDS.observeNanos(result.elapsedNanos());
+        System.out.printf("Audited [%d] blocks in [%d] ms: [%.0f blocks/s]; first invalid block: [%d]%n",
+                result.blocksChecked(), TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()),
+                result.blocksPerSecond(), result.firstInvalidIndex());
+
+        if (result.isValid() && !snapshot.isEmpty()) {
+            lockChain();
+            try {
+                int lastPosition = snapshot.size() - 1;
+                if (blocks.size() > lastPosition
+                        && Objects.equals(blocks.get(lastPosition).getBlockHash(), snapshot.get(lastPosition).getBlockHash())) {
+                    validatedUpTo = Math.max(validatedUpTo, lastPosition);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Полный проход по всем связям от вершины до генезиса, после успешной проверки двигает
+     * {@link BlockChainService#validatedUpTo} на вершину
      */
     @VisibleForTesting
     void validateChains() throws ChainValidationException {
-        if (blocks.isEmpty() || blocks.size() == 1) {
-            return;
-        }
+        long startNanos = System.nanoTime();
         for (int i = blocks.size() - 1; i >= 1; i--) {
             Block prevBlock = blocks.get(i - 1);
             Block curBlock = blocks.get(i);
-            if (!Objects.equals(prevBlock.getHash(), curBlock.getPrevHash()) || prevBlock.getIndex() + 1 != curBlock.getIndex()) {
+            if (!ChainAuditor.isValidLink(prevBlock, curBlock)) {
+                throw new ChainValidationException(prevBlock.getIndex(), curBlock.getIndex());
+            }
+        }
+        validatedUpTo = blocks.size() - 1;
+        NodeMetrics.CHAIN_VALIDATION_SECONDS.observeSince(startNanos);
+    }
+
+    /**
+     * Берет {@link BlockChainService#lock}, записывая время ожидания
+     */
+    private void lockChain() {
+        long startNanos = System.nanoTime();
+        lock.lock();
+        NodeMetrics.CHAIN_LOCK_WAIT_SECONDS.observeSince(startNanos);
+    }
+
+    private void validatePendingLinks() throws ChainValidationException {
+        for (int i = Math.max(validatedUpTo, 0) + 1; i < blocks.size(); i++) {
+            Block prevBlock = blocks.get(i - 1);
+            Block curBlock = blocks.get(i);
+            if (!ChainAuditor.isValidLink(prevBlock, curBlock)) {
                 throw new ChainValidationException(prevBlock.getIndex(), curBlock.getIndex());
             }
+            validatedUpTo = i;
         }
     }
 
+    @VisibleForTesting
+    ChainSnapshot snapshot() {
+        return chain.get();
+    }
+
+    @VisibleForTesting
+    Mempool mempool() {
+        return mempool;
+    }
+
     @NotNull
     protected Block getLastBlock() {
-        return blocks.get(blocks.size() - 1);
+        return Objects.requireNonNull(chain.get().lastBlock(), "Chain is empty");
     }
 
 
@@ -164,59 +870,85 @@ public class BlockChainService {
         return ToStringBuilder.reflectionToString(this);
     }
 
+    /**
+     * Майнит блок поверх снимка вершины без лока, как только {@link MiningScheduler} выдаст новую вершину.
+     * Майнинг прерывается, как только опубликован другой снимок, и сразу начинается на новой вершине.
+     * Принятый узлами блок подключается к дереву блоков, как полученный от другого узла: если вершина
+     * успела измениться, он встает в боковую ветку, на которой узлы могут продолжить цепочку
+     */
     private class BlockChainMainWorker implements Runnable {
 
         @Override
         public void run() {
             while (!Thread.currentThread().isInterrupted()) {
-                lock.lock();
+                ChainSnapshot tip;
                 try {
-                    try {
-                        Thread.sleep(ThreadLocalRandom.current().nextInt(4000, 15000));
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
-                    Block prevBlock = getLastBlock();
-                    Block generatedBlock = BlockGenerationUtils.generateBlock(prevBlock, () -> blockRequestsIncoming.get() > 0);
-                    if (generatedBlock == null) {
-                        System.out.printf("Block mining was finished. Block requests: [%d]%n",
-                                blockRequestsIncoming.get());
-                        continue;
-                    }
-
-                    System.out.printf("Generated block with index: [%d]%n", generatedBlock.getIndex());
-
-                    List<MinedBlockResponse> responses = rpcClient.sendBlockBroadcast(generatedBlock);
-
-                    System.out.printf("Block broadcast returned: [%s]%n", Joiner.on(";").join(responses));
-
-                    Map<MinedBlockResponseCode, List<MinedBlockResponse>> responsesByCode = responses.stream()
-                            .filter(response -> response.getResponseCode() != MinedBlockResponseCode.FAILED) // failed doesn't contain any useful info
-                            .collect(Collectors.groupingBy(MinedBlockResponse::getResponseCode));
-
-                    List<MinedBlockResponse> rejectedResponses = responsesByCode.get(MinedBlockResponseCode.REJECTED);
-                    int rejected = rejectedResponses == null ? -1 : rejectedResponses.size();
-                    List<MinedBlockResponse> acceptedResponses = responsesByCode.get(MinedBlockResponseCode.ACCEPTED);
-                    int accepted =  acceptedResponses == null ? -1 : acceptedResponses.size();
-
-                    boolean isRejected = rejected == responsesByCode.size();
-
-                    if (isRejected) {
-                        loadBlockchainFromCluster(generatedBlock.getIndex());
-                        continue;
-                    }
-
-                    boolean isAccepted = accepted >= Math.ceil((double) responsesByCode.size() / 2);
-
-                    if (isAccepted || responsesByCode.isEmpty()) {
-                        add(generatedBlock);
-                    }
-
-                } catch (ChainValidationException e) {
-                    throw new RuntimeException(e); // TODO
-                } finally {
-                    lock.unlock();
+                    tip = miningScheduler.awaitTip();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    continue;
+                }
+                Block prevBlock = Objects.requireNonNull(tip.lastBlock());
+                NodeMetrics.MINING_ATTEMPTS.inc();
+                List<String> entries = mempool.select(blockMaxBytes);
+                if (!entries.isEmpty()) {
+                    System.out.printf("Packing [%d] of [%d] mempool entries into block with index: [%d]%n",
+                            entries.size(), mempool.size(), prevBlock.getIndex() + 1);
                 }
+                String data = entries.isEmpty() ? BlockGenerationUtils.generateRandomData() : BlockPayload.encode(entries);
+                long difficulty = retarget.expectedDifficulty(prevBlock,
+                        tip.blockAt(retarget.windowStart(prevBlock.getIndex() + 1)));
+                Block generatedBlock = BlockGenerationUtils.generateBlock(prevBlock, data, difficulty, () -> chain.get() != tip, miner);
+                if (generatedBlock == null) {
+                    NodeMetrics.MINING_ABORTS.inc();
+                    System.out.printf("Block mining was abandoned, chain tip has moved to index: [%d]%n",
+                            chainSize() - 1);
+                    continue;
+                }
+
+                NodeMetrics.BLOCKS_MINED.inc();
+                System.out.printf("Generated block with index: [%d]%n", generatedBlock.getIndex());
+
+                List<MinedBlockResponse> responses = rpcClient.sendBlockBroadcast(generatedBlock);
+
+                System.out.printf("Block broadcast returned: [%s]%n", Joiner.on(";").join(responses));
+
+                Map<MinedBlockResponseCode, List<MinedBlockResponse>> responsesByCode = responses.stream()
+                        .filter(response -> response.getResponseCode() != MinedBlockResponseCode.FAILED) // failed doesn't contain any useful info
+                        .collect(Collectors.groupingBy(MinedBlockResponse::getResponseCode));
+
+                List<MinedBlockResponse> rejectedResponses = responsesByCode.get(MinedBlockResponseCode.REJECTED);
+                int rejected = rejectedResponses == null ? -1 : rejectedResponses.size();
+                List<MinedBlockResponse> acceptedResponses = responsesByCode.get(MinedBlockResponseCode.ACCEPTED);
+                int accepted =  acceptedResponses == null ? -1 : acceptedResponses.size();
+
+                boolean isRejected = rejected == responsesByCode.size();
+
+                if (isRejected) {
+                    loadBlockchainFromCluster(generatedBlock.getIndex());
+                    continue;
+                }
+
+                boolean isAccepted = accepted >= Math.ceil((double) responsesByCode.size() / 2);
+
+                if (isAccepted || responsesByCode.isEmpty()) {
+                    commit(generatedBlock);
+                }
+            }
+        }
+
+        /**
+         * Подключает блок, принятый узлами. Если вершина сдвинулась во время рассылки, блок не теряется:
+         * узлы уже строят на нем, и их следующие блоки найдут родителя в боковой ветке
+         */
+        private void commit(Block generatedBlock) {
+            lockChain();
+            try {
+                if (!connect(generatedBlock)) {
+                    System.out.printf("Generated block with index: [%d] is kept off the main chain%n", generatedBlock.getIndex());
+                }
+            } finally {
+                lock.unlock();
             }
         }
     }
@@ -0,0 +1,136 @@
+package org.main.state;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Все, что известно о блоках помимо основной цепочки: накопленная работа каждой позиции основной цепочки,
+ * боковые ветки по хешу блока и сироты, родитель которых еще не пришел. Используется под локом
+ * {@link BlockChainService}, основная цепочка хранится в его {@code BlockStore}.
+ */
+final class BlockTree {
+
+    static final int MAX_ORPHANS = 1024;
+    /**
+     * Боковые блоки, отставшие от вершины больше чем на столько блоков, удаляются
+     */
+    static final int MAX_FORK_DEPTH = 1000;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] mainWork = new long[INITIAL_CAPACITY];
+    private int mainSize;
+    private final Map<BlockHash, SideBlock> sideBlocks = new HashMap<>();
+    private final Map<BlockHash, Block> orphans = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BlockHash, Block> eldest) {
+            return size() > MAX_ORPHANS;
+        }
+    };
+
+    /**
+     * @param cumulativeWork работа цепочки от генезиса до этого блока включительно
+     */
+    record SideBlock(@NotNull Block block, long cumulativeWork) {
+    }
+
+    /**
+     * Ожидаемое число попыток, чтобы найти хеш блока, то есть его сложность
+     */
+    static long work(@NotNull Block block) {
+        return block.getDifficulty();
+    }
+
+    void onAppended(@NotNull Block block) {
+        if (mainSize == mainWork.length) {
+            mainWork = Arrays.copyOf(mainWork, mainSize + (mainSize >> 1));
+        }
+        mainWork[mainSize] = tipWork() + work(block);
+        mainSize++;
+    }
+
+    void onTruncated(int newSize) {
+        mainSize = Math.min(mainSize, newSize);
+    }
+
+    /**
+     * Работа основной цепочки до позиции {@code position} включительно
+     */
+    long workAt(int position) {
+        Objects.checkIndex(position, mainSize);
+        return mainWork[position];
+    }
+
+    long tipWork() {
+        return mainSize == 0 ? 0L : mainWork[mainSize - 1];
+    }
+
+    boolean isKnown(@NotNull BlockHash hash) {
+        return sideBlocks.containsKey(hash) || orphans.containsKey(hash);
+    }
+
+    @Nullable
+    SideBlock side(@Nullable BlockHash hash) {
+        return hash == null ? null : sideBlocks.get(hash);
+    }
+
+    @NotNull
+    SideBlock addSide(@NotNull Block block, long cumulativeWork) {
+        SideBlock side = new SideBlock(block, cumulativeWork);
+        sideBlocks.put(block.getBlockHash(), side);
+        return side;
+    }
+
+    void removeSide(@NotNull BlockHash hash) {
+        sideBlocks.remove(hash);
+    }
+
+    void addOrphan(@NotNull Block block) {
+        orphans.put(block.getBlockHash(), block);
+    }
+
+    /**
+     * Забирает из пула сирот прямых потомков блока {@code parentHash}
+     */
+    @NotNull
+    List<Block> takeOrphans(@NotNull BlockHash parentHash) {
+        List<Block> children = new ArrayList<>();
+        Iterator<Block> iterator = orphans.values().iterator();
+        while (iterator.hasNext()) {
+            Block orphan = iterator.next();
+            if (parentHash.equals(orphan.getPrevBlockHash())) {
+                children.add(orphan);
+                iterator.remove();
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Удаляет боковые блоки, которые уже не могут перевесить основную цепочку с вершиной {@code tipIndex}
+     */
+    void prune(long tipIndex) {
+        if (!sideBlocks.isEmpty()) {
+            sideBlocks.values().removeIf(side -> side.block().getIndex() < tipIndex - MAX_FORK_DEPTH);
+        }
+    }
+
+    int sideSize() {
+        return sideBlocks.size();
+    }
+
+    int orphanSize() {
+        return orphans.size();
+    }
+}
@@ -0,0 +1,118 @@
+package org.main.state;
+
+import org.jetbrains.annotations.NotNull;
+import org.main.BlockGenerationUtils;
+import org.main.entity.Block;
+import org.main.entity.BlockHeader;
+import org.main.mining.DifficultyRetarget;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Параллельная полная проверка цепочки: список делится на диапазоны, в каждом проверяются связи
+ * prevHash/index и (опционально) пересчитывается proof-of-work вместе с ожидаемой сложностью блока.
+ * Проверки блоков независимы друг от друга.
+ */
+public class ChainAuditor {
+
+    private static final int RANGE_THRESHOLD = 2048;
+
+    private final ForkJoinPool pool;
+    private final DifficultyRetarget retarget;
+
+    public ChainAuditor(@NotNull ForkJoinPool pool) {
+        this(pool, DifficultyRetarget.fromProperties(new Properties()));
+    }
+
+    public ChainAuditor(@NotNull ForkJoinPool pool, @NotNull DifficultyRetarget retarget) {
+        this.pool = pool;
+        this.retarget = retarget;
+    }
+
+    @NotNull
+    public AuditResult audit(@NotNull List<Block> blocks, boolean checkProofOfWork) {
+        long startNanos = System.nanoTime();
+        AtomicInteger firstInvalidPosition = new AtomicInteger(Integer.MAX_VALUE);
+        pool.invoke(new RangeAudit(blocks, 0, blocks.size(), checkProofOfWork, retarget, firstInvalidPosition));
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        int position = firstInvalidPosition.get();
+        if (position == Integer.MAX_VALUE) {
+            return new AuditResult(AuditResult.NO_INVALID_BLOCK, AuditResult.NO_INVALID_POSITION, blocks.size(), elapsedNanos);
+        }
+        return new AuditResult(blocks.get(position).getIndex(), position, blocks.size(), elapsedNanos);
+    }
+
+    static boolean isValidLink(Block prevBlock, Block curBlock) {
+        return Objects.equals(prevBlock.getBlockHash(), curBlock.getPrevBlockHash()) && prevBlock.getIndex() + 1 == curBlock.getIndex();
+    }
+
+    static boolean isValidLink(BlockHeader prevHeader, BlockHeader curHeader) {
+        return Objects.equals(prevHeader.hash(), curHeader.prevHash()) && prevHeader.index() + 1 == curHeader.index();
+    }
+
+    private static class RangeAudit extends RecursiveAction {
+
+        private final List<Block> blocks;
+        private final int from;
+        private final int to;
+        private final boolean checkProofOfWork;
+        private final DifficultyRetarget retarget;
+        private final AtomicInteger firstInvalidPosition;
+
+        private RangeAudit(List<Block> blocks, int from, int to, boolean checkProofOfWork, DifficultyRetarget retarget,
+                           AtomicInteger firstInvalidPosition) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.checkProofOfWork = checkProofOfWork;
+            this.retarget = retarget;
+            this.firstInvalidPosition = firstInvalidPosition;
+        }
+
+        @Override
+        protected void compute() {
+            if (from >= firstInvalidPosition.get()) {
+                return; // an earlier invalid block is already found
+            }
+            if (to - from <= RANGE_THRESHOLD) {
+                auditRange();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAudit(blocks, from, middle, checkProofOfWork, retarget, firstInvalidPosition),
+                    new RangeAudit(blocks, middle, to, checkProofOfWork, retarget, firstInvalidPosition));
+        }
+
+        private void auditRange() {
+            for (int i = from; i < to; i++) {
+                Block curBlock = blocks.get(i);
+                boolean valid = (i == 0 || isValidLink(blocks.get(i - 1), curBlock))
+                        && (!checkProofOfWork || (i == 0 || hasExpectedDifficulty(i)) && BlockGenerationUtils.isBlockHashValid(curBlock));
+                if (!valid) {
+                    firstInvalidPosition.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Сложность блока, окно пересчета которого начинается до начала списка, не проверяется
+         */
+        private boolean hasExpectedDifficulty(int position) {
+            Block block = blocks.get(position);
+            long windowStartIndex = retarget.windowStart(block.getIndex());
+            long windowStartPosition = windowStartIndex - blocks.get(0).getIndex();
+            if (windowStartIndex >= 0 && windowStartPosition < 0) {
+                return true;
+            }
+            Block windowStart = windowStartIndex >= 0 ? blocks.get((int) windowStartPosition) : null;
+            return block.getDifficulty() == retarget.expectedDifficulty(blocks.get(position - 1), windowStart);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.main.state;
+
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.Block;
+
+/**
+ * Изменения основной цепочки. Вызывается под локом цепочки, поэтому обработчик должен быть быстрым
+ * и не должен обращаться к {@link BlockChainService} с изменениями
+ */
+public interface ChainListener {
+
+    default void onAppended(@NotNull Block block) {
+    }
+
+    /**
+     * Блоки с индексом {@code fromIndex} и больше удалены из цепочки, например при переключении ветки
+     */
+    default void onTruncated(long fromIndex) {
+    }
+}
@@ -0,0 +1,54 @@
+package org.main.state;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Неизменяемое состояние цепочки на момент последнего изменения. Публикуется целиком, поэтому длина,
+ * вершина и блоки, прочитанные из одного снимка, всегда согласованы
+ */
+record ChainSnapshot(@NotNull List<Block> blocks) {
+
+    static final ChainSnapshot EMPTY = new ChainSnapshot(List.of());
+
+    int size() {
+        return blocks.size();
+    }
+
+    @Nullable
+    Block lastBlock() {
+        return blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+    }
+
+    /**
+     * @return {@code true}, если в цепочке есть блок {@code hash} с индексом {@code index}
+     */
+    boolean contains(long index, @Nullable BlockHash hash) {
+        Block block = blockAt(index);
+        return block != null && Objects.equals(block.getBlockHash(), hash);
+    }
+
+    @Nullable
+    Block blockAt(long index) {
+        if (blocks.isEmpty()) {
+            return null;
+        }
+        long position = index - blocks.get(0).getIndex();
+        return position >= 0 && position < blocks.size() ? blocks.get((int) position) : null;
+    }
+
+    /**
+     * Блоки {@code [fromIndex, toIndex)}, обрезанные по длине снимка
+     */
+    @NotNull
+    List<Block> range(long fromIndex, long toIndex) {
+        int to = (int) Math.min(toIndex, blocks.size());
+        int from = (int) Math.min(fromIndex, to);
+        return blocks.subList(from, to);
+    }
+}
@@ -0,0 +1,85 @@
+package org.main.state;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.main.mining.MiningConfiguration;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Решает, когда начинать майнинг: воркер ждет не по таймеру, а публикации нового снимка цепочки и сразу
+ * получает новую вершину. Необязательная пауза перед майнингом выбирается случайно из
+ * {@code [minDelayMillis, maxDelayMillis]} и начинается заново при каждой смене вершины.
+ * Прерывание текущего майнинга при смене вершины делает условие остановки майнера, а не планировщик
+ */
+final class MiningScheduler {
+
+    private final Supplier<ChainSnapshot> chain;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final Object monitor = new Object();
+
+    MiningScheduler(@NotNull Supplier<ChainSnapshot> chain, long minDelayMillis, long maxDelayMillis) {
+        Validate.isTrue(0 <= minDelayMillis && minDelayMillis <= maxDelayMillis,
+                "Mining delay range [%d, %d] is invalid", minDelayMillis, maxDelayMillis);
+        this.chain = chain;
+        this.minDelayMillis = minDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @NotNull
+    static MiningScheduler fromProperties(@NotNull Supplier<ChainSnapshot> chain, @NotNull Properties properties) {
+        long minDelayMillis = Long.parseLong(properties.getProperty(MiningConfiguration.MINING_DELAY_MIN_MS_PROPERTY, "0"));
+        long maxDelayMillis = Long.parseLong(properties.getProperty(MiningConfiguration.MINING_DELAY_MAX_MS_PROPERTY,
+                String.valueOf(minDelayMillis)));
+        return new MiningScheduler(chain, minDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Вызывается после каждой публикации снимка цепочки
+     */
+    void onPublished() {
+        synchronized (monitor) {
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Ждет непустую цепочку и выдерживает паузу, если она настроена
+     *
+     * @return снимок, на вершине которого нужно майнить
+     */
+    @NotNull
+    ChainSnapshot awaitTip() throws InterruptedException {
+        synchronized (monitor) {
+            ChainSnapshot tip = chain.get();
+            long deadline = deadline();
+            while (true) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (tip.lastBlock() != null && remainingNanos <= 0) {
+                    return tip;
+                }
+                if (tip.lastBlock() == null) {
+                    monitor.wait(); // nothing to mine on until the chain is loaded
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(monitor, remainingNanos);
+                }
+                ChainSnapshot current = chain.get();
+                if (current != tip) {
+                    tip = current;
+                    deadline = deadline();
+                }
+            }
+        }
+    }
+
+    private long deadline() {
+        long delayMillis = minDelayMillis == maxDelayMillis
+                ? minDelayMillis
+                : ThreadLocalRandom.current().nextLong(minDelayMillis, maxDelayMillis + 1);
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+}
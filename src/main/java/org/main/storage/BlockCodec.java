@@ -0,0 +1,129 @@
+package org.main.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Бинарный формат блока для хранения на диске.
+ * Хеши SHA-256 пишутся как 32 байта, прочие значения хешей - как строки.
+ */
+public final class BlockCodec {
+
+    private static final byte VERSION = 2;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final int PREV_HASH_SHIFT = 0;
+    private static final int HASH_SHIFT = 2;
+    private static final int HASH_NULL = 0;
+    private static final int HASH_BINARY = 1;
+    private static final int HASH_TEXT = 2;
+    private static final int HASH_KIND_MASK = 0b11;
+
+    private BlockCodec() {}
+
+    @NotNull
+    public static byte[] encode(@NotNull Block block) {
+        BlockHash prevHash = block.getPrevBlockHash();
+        BlockHash hash = block.getBlockHash();
+        byte[] data = toBytes(block.getData());
+        int length = 1 + Long.BYTES * 4 + 1 + hashLength(prevHash) + hashLength(hash) + stringLength(data);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(VERSION);
+        buffer.putLong(block.getIndex());
+        buffer.putLong(block.getTimestamp());
+        buffer.putLong(block.getNonce());
+        buffer.putLong(block.getDifficulty());
+        buffer.put((byte) (hashKind(prevHash) << PREV_HASH_SHIFT | hashKind(hash) << HASH_SHIFT));
+        putHash(buffer, prevHash);
+        putHash(buffer, hash);
+        putString(buffer, data);
+        return buffer.array();
+    }
+
+    @NotNull
+    public static Block decode(@NotNull ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported block format version: " + version);
+        }
+        long index = buffer.getLong();
+        long timestamp = buffer.getLong();
+        long nonce = buffer.getLong();
+        long difficulty = buffer.getLong();
+        int flags = buffer.get();
+        BlockHash prevHash = getHash(buffer, flags >> PREV_HASH_SHIFT & HASH_KIND_MASK);
+        BlockHash hash = getHash(buffer, flags >> HASH_SHIFT & HASH_KIND_MASK);
+        String data = getString(buffer);
+        return new Block(index, prevHash, hash, nonce, data, timestamp, difficulty);
+    }
+
+    private static int hashKind(@Nullable BlockHash hash) {
+        if (hash == null) {
+            return HASH_NULL;
+        }
+        return hash.isBinary() ? HASH_BINARY : HASH_TEXT;
+    }
+
+    private static int hashLength(@Nullable BlockHash hash) {
+        return switch (hashKind(hash)) {
+            case HASH_BINARY -> BlockHash.LENGTH;
+            case HASH_TEXT -> stringLength(toBytes(hash.toString()));
+            default -> 0;
+        };
+    }
+
+    private static void putHash(ByteBuffer buffer, @Nullable BlockHash hash) {
+        switch (hashKind(hash)) {
+            case HASH_BINARY -> hash.write(buffer);
+            case HASH_TEXT -> putString(buffer, toBytes(hash.toString()));
+            default -> {
+            }
+        }
+    }
+
+    @Nullable
+    private static BlockHash getHash(ByteBuffer buffer, int kind) {
+        return switch (kind) {
+            case HASH_BINARY -> BlockHash.read(buffer);
+            case HASH_TEXT -> BlockHash.of(getString(buffer));
+            case HASH_NULL -> null;
+            default -> throw new IllegalStateException("Unknown hash kind: " + kind);
+        };
+    }
+
+    @Nullable
+    private static byte[] toBytes(@Nullable String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringLength(@Nullable byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer buffer, @Nullable byte[] value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
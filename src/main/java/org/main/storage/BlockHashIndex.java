@@ -0,0 +1,190 @@
+package org.main.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.BlockHash;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Индекс хеш блока - позиция в цепочке. SHA-256 хранятся в открытой адресации с линейным пробированием:
+ * ключ - четыре long в общем массиве, значение - int, 36 байт на слот и ни одного объекта на запись.
+ * Таблица заполнена не больше чем наполовину.
+ * Хеши-строки, которые не являются SHA-256, хранятся отдельно в словаре.
+ * <p>
+ * Изменения нужно делать под внешней блокировкой цепочки. Поиск не блокируется: он читает массивы
+ * оптимистично и повторяется под блокировкой чтения, только если параллельно шла запись.
+ */
+public class BlockHashIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = 0; // values are stored as position + 1
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys = new long[INITIAL_CAPACITY * 4];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+    private final Map<BlockHash, Integer> textHashes = new ConcurrentHashMap<>();
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + textHashes.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return позиция блока или {@link #NOT_FOUND}
+     */
+    public int get(@NotNull BlockHash hash) {
+        long stamp = lock.tryOptimisticRead();
+        int position = find(hash);
+        if (lock.validate(stamp)) {
+            return position;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public void put(@NotNull BlockHash hash, int position) {
+        long stamp = lock.writeLock();
+        try {
+            if (!hash.isBinary()) {
+                textHashes.put(hash, position);
+                return;
+            }
+            if ((size + 1) * 2 > values.length) {
+                resize(values.length * 2);
+            }
+            int mask = values.length - 1;
+            int slot = slot(hash, mask);
+            while (values[slot] != EMPTY && !keyEquals(keys, slot, hash)) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == EMPTY) {
+                size++;
+            }
+            writeKey(keys, slot, hash);
+            values[slot] = position + 1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(@NotNull BlockHash hash) {
+        long stamp = lock.writeLock();
+        try {
+            if (!hash.isBinary()) {
+                textHashes.remove(hash);
+                return;
+            }
+            int mask = values.length - 1;
+            int slot = slot(hash, mask);
+            while (values[slot] != EMPTY && !keyEquals(keys, slot, hash)) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == EMPTY) {
+                return;
+            }
+            values[slot] = EMPTY;
+            size--;
+            shiftBack(slot, mask);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int find(BlockHash hash) {
+        if (!hash.isBinary()) {
+            Integer position = textHashes.get(hash);
+            return position == null ? NOT_FOUND : position;
+        }
+        long[] currentKeys = keys;
+        int[] currentValues = values;
+        int mask = currentValues.length - 1;
+        if (currentKeys.length != currentValues.length * 4) {
+            return NOT_FOUND; // torn read during resize, validated by the caller
+        }
+        int slot = slot(hash, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            int value = currentValues[slot];
+            if (value == EMPTY) {
+                return NOT_FOUND;
+            }
+            if (keyEquals(currentKeys, slot, hash)) {
+                return value - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Удаление без надгробий: записи после освобожденного слота сдвигаются назад, если их цепочка
+     * пробирования проходит через него
+     */
+    private void shiftBack(int freed, int mask) {
+        int slot = (freed + 1) & mask;
+        while (values[slot] != EMPTY) {
+            int home = (int) mix(keys[slot * 4]) & mask;
+            if (((slot - home) & mask) >= ((slot - freed) & mask)) {
+                System.arraycopy(keys, slot * 4, keys, freed * 4, 4);
+                values[freed] = values[slot];
+                values[slot] = EMPTY;
+                freed = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] newKeys = new long[capacity * 4];
+        int[] newValues = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == EMPTY) {
+                continue;
+            }
+            int slot = (int) mix(oldKeys[i * 4]) & mask;
+            while (newValues[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(oldKeys, i * 4, newKeys, slot * 4, 4);
+            newValues[slot] = oldValues[i];
+        }
+        keys = newKeys;
+        values = newValues;
+    }
+
+    private static int slot(BlockHash hash, int mask) {
+        return (int) mix(hash.word(0)) & mask;
+    }
+
+    private static long mix(long word) {
+        return word ^ (word >>> 32) ^ (word >>> 17);
+    }
+
+    private static boolean keyEquals(long[] keys, int slot, BlockHash hash) {
+        int offset = slot * 4;
+        return keys[offset] == hash.word(0) && keys[offset + 1] == hash.word(1)
+                && keys[offset + 2] == hash.word(2) && keys[offset + 3] == hash.word(3);
+    }
+
+    private static void writeKey(long[] keys, int slot, BlockHash hash) {
+        int offset = slot * 4;
+        for (int i = 0; i < 4; i++) {
+            keys[offset + i] = hash.word(i);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package org.main.storage;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only лог блоков на диске. Лог разбит на сегменты {@code <индекс первого блока>.log},
+ * запись в сегменте: {@code [int длина][int crc32][блок в формате BlockCodec]}.
+ * Чтение идет через memory-mapped сегменты, позиция каждого блока хранится в индексе смещений.
+ * <p>
+ * Позиция в логе совпадает с позицией блока в цепочке. При открытии недописанный хвост
+ * (например, после падения процесса) отрезается по первой записи с неверной длиной или crc.
+ */
+public class BlockLog implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_LENGTH = Integer.BYTES * 2;
+
+    @Nullable
+    private static final Method INVOKE_CLEANER;
+    @Nullable
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // mappings will be released by GC
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long size;
+    private long lastSyncNanos = System.nanoTime();
+
+    public BlockLog(@NotNull Path directory, long segmentBytes, @NotNull FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        Validate.inclusiveBetween(RECORD_HEADER_LENGTH + 1L, Integer.MAX_VALUE, segmentBytes,
+                "Segment size should fit a memory mapping");
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * @return лог в {@code storage_dir/<nodeName>} или {@code null}, если {@code storage_dir} не задан
+     */
+    @Nullable
+    public static BlockLog fromProperties(@NotNull Properties properties, @NotNull String nodeName) throws IOException {
+        String storageDir = properties.getProperty(StorageConfiguration.STORAGE_DIR_PROPERTY);
+        if (storageDir == null || storageDir.isBlank()) {
+            return null;
+        }
+        long segmentBytes = Long.parseLong(properties.getProperty(StorageConfiguration.SEGMENT_BYTES_PROPERTY,
+                String.valueOf(StorageConfiguration.DEFAULT_SEGMENT_BYTES)));
+        FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(properties.getProperty(StorageConfiguration.FSYNC_POLICY_PROPERTY,
+                FsyncPolicy.INTERVAL.name()).toUpperCase());
+        long fsyncIntervalMillis = Long.parseLong(properties.getProperty(StorageConfiguration.FSYNC_INTERVAL_MS_PROPERTY,
+                String.valueOf(StorageConfiguration.DEFAULT_FSYNC_INTERVAL_MS)));
+        return new BlockLog(Path.of(storageDir, nodeName), segmentBytes, fsyncPolicy, fsyncIntervalMillis);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized void append(@NotNull Block block) throws IOException {
+        byte[] payload = BlockCodec.encode(block);
+        int recordLength = RECORD_HEADER_LENGTH + payload.length;
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || (segment.end > 0 && segment.end + recordLength > segmentBytes)) {
+            if (segment != null && fsyncPolicy != FsyncPolicy.ALWAYS) {
+                segment.channel.force(false); // segment is complete
+            }
+            segment = Segment.create(directory, size);
+            segments.add(segment);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+        long position = segment.end;
+        while (record.hasRemaining()) {
+            position += segment.channel.write(record, position);
+        }
+        segment.addRecord(segment.end);
+        segment.end = position;
+        size++;
+
+        long now = System.nanoTime();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS
+                || (fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSyncNanos >= fsyncIntervalNanos)) {
+            segment.channel.force(false);
+            lastSyncNanos = now;
+        }
+    }
+
+    @NotNull
+    public synchronized Block read(long position) throws IOException {
+        Validate.isTrue(position >= 0 && position < size, "Position [%d] is out of block log of size [%d]", position, size);
+        Segment segment = segmentOf(position);
+        return BlockCodec.decode(segment.record((int) (position - segment.baseIndex)));
+    }
+
+    /**
+     * Все блоки лога по порядку, используется для восстановления цепочки при старте
+     */
+    @NotNull
+    public synchronized List<Block> readAll() throws IOException {
+        List<Block> blocks = new ArrayList<>((int) size);
+        for (Segment segment : segments) {
+            for (int slot = 0; slot < segment.count; slot++) {
+                blocks.add(BlockCodec.decode(segment.record(slot)));
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Отрезает все блоки начиная с позиции {@code newSize}
+     */
+    public synchronized void truncate(long newSize) throws IOException {
+        Validate.isTrue(newSize >= 0 && newSize <= size, "Can't truncate block log of size [%d] to [%d]", size, newSize);
+        if (newSize == size) {
+            return;
+        }
+        int keptSegments = 0;
+        while (keptSegments < segments.size() && segments.get(keptSegments).baseIndex < newSize) {
+            keptSegments++;
+        }
+        deleteSegmentsAfter(keptSegments);
+        Segment segment = keptSegments > 0 ? segments.get(keptSegments - 1) : null;
+        if (segment != null && newSize - segment.baseIndex < segment.count) {
+            segment.truncateAt(segment.offsets[(int) (newSize - segment.baseIndex)]);
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                segment.channel.force(false);
+            }
+        }
+        size = newSize;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).channel.force(false);
+            lastSyncNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private void open() throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            Segment segment = Segment.open(path, baseIndex(path));
+            if (segment.baseIndex != size) {
+                segment.close();
+                throw new IOException("Block log segment " + path + " does not continue the log at position " + size);
+            }
+            segments.add(segment);
+            boolean complete = segment.scan();
+            size += segment.count;
+            if (!complete) {
+                System.out.printf("Truncated torn tail of block log segment: [%s] at position: [%d]%n", path, segment.end);
+                // later segments don't continue the truncated one and are not opened yet
+                for (Path stale : paths.subList(i + 1, paths.size())) {
+                    Files.delete(stale);
+                }
+                break;
+            }
+        }
+    }
+
+    private Segment segmentOf(long position) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).baseIndex <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return segments.get(low);
+    }
+
+    private void deleteSegmentsAfter(int from) throws IOException {
+        while (segments.size() > from) {
+            Segment segment = segments.remove(segments.size() - 1);
+            segment.close();
+            Files.delete(segment.path);
+        }
+        if (from > 0) {
+            return;
+        }
+        // all segments are removed, files of a broken sequence may still be left
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static long baseIndex(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected block log segment name: " + path, e);
+        }
+    }
+
+    private static void unmap(@Nullable MappedByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // mapping will be released by GC
+        }
+    }
+
+    private static final class Segment {
+
+        private final long baseIndex;
+        private final Path path;
+        private final FileChannel channel;
+        private long[] offsets = new long[1024];
+        private int count;
+        private long end;
+        @Nullable
+        private MappedByteBuffer mapped;
+
+        private Segment(long baseIndex, Path path, FileChannel channel) {
+            this.baseIndex = baseIndex;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        /**
+         * Новый пустой сегмент. Оставшийся файл с тем же именем очищается, иначе его записи попали бы в лог
+         */
+        static Segment create(Path directory, long baseIndex) throws IOException {
+            Path path = directory.resolve(String.format("%020d%s", baseIndex, SEGMENT_SUFFIX));
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(baseIndex, path, channel);
+        }
+
+        static Segment open(Path path, long baseIndex) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(baseIndex, path, channel);
+        }
+
+        /**
+         * Восстанавливает индекс смещений и отрезает недописанный хвост
+         *
+         * @return {@code false}, если хвост был отрезан
+         */
+        boolean scan() throws IOException {
+            long fileSize = channel.size();
+            end = fileSize;
+            ByteBuffer buffer = map(fileSize);
+            long position = 0;
+            CRC32 crc = new CRC32();
+            while (position < fileSize) {
+                if (fileSize - position < RECORD_HEADER_LENGTH) {
+                    break;
+                }
+                int length = buffer.getInt((int) position);
+                int checksum = buffer.getInt((int) position + Integer.BYTES);
+                long payloadStart = position + RECORD_HEADER_LENGTH;
+                if (length < 0 || payloadStart + length > fileSize) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice((int) payloadStart, length));
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                addRecord(position);
+                position = payloadStart + length;
+            }
+            if (position == fileSize) {
+                return true;
+            }
+            truncateAt(position);
+            return false;
+        }
+
+        void addRecord(long offset) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+
+        ByteBuffer record(int slot) throws IOException {
+            long offset = offsets[slot];
+            long recordEnd = slot + 1 < count ? offsets[slot + 1] : end;
+            ByteBuffer buffer = map(recordEnd);
+            return buffer.slice((int) offset + RECORD_HEADER_LENGTH, (int) (recordEnd - offset) - RECORD_HEADER_LENGTH);
+        }
+
+        void truncateAt(long position) throws IOException {
+            unmap(mapped);
+            mapped = null;
+            channel.truncate(position);
+            end = position;
+            int slot = Arrays.binarySearch(offsets, 0, count, position);
+            count = slot >= 0 ? slot : -slot - 1;
+        }
+
+        void close() throws IOException {
+            unmap(mapped);
+            mapped = null;
+            channel.close();
+        }
+
+        /**
+         * Отображение сегмента в память как минимум до {@code requiredEnd}. Активный сегмент растет,
+         * поэтому при чтении за пределами текущего отображения оно пересоздается
+         */
+        private ByteBuffer map(long requiredEnd) throws IOException {
+            if (mapped == null || mapped.capacity() < requiredEnd) {
+                unmap(mapped);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            }
+            return mapped;
+        }
+    }
+}
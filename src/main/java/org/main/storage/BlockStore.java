@@ -0,0 +1,43 @@
+package org.main.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.Block;
+
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Хранилище цепочки блоков в памяти узла. Позиция блока - его порядковый номер в цепочке.
+ * Изменения нужно делать под внешней блокировкой, чтение {@link #snapshot} допускается без нее.
+ */
+public interface BlockStore {
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @NotNull
+    Block get(int position);
+
+    void add(@NotNull Block block);
+
+    void truncate(int newSize);
+
+    /**
+     * Неизменяемое представление блоков {@code [from, to)}, на которое не влияют последующие изменения хранилища
+     */
+    @NotNull
+    List<Block> snapshot(int from, int to);
+
+    @NotNull
+    static BlockStore fromProperties(@NotNull Properties properties) {
+        BlockStoreType type = BlockStoreType.valueOf(properties.getProperty(StorageConfiguration.BLOCK_STORE_PROPERTY,
+                BlockStoreType.HEAP.name()).toUpperCase());
+        return switch (type) {
+            case HEAP -> new HeapBlockStore();
+            case COLUMNAR -> new ColumnarBlockStore();
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package org.main.storage;
+
+public enum BlockStoreType {
+    /**
+     * Объекты {@link org.main.entity.Block} в массиве, который снимки используют без копирования
+     */
+    HEAP,
+    /**
+     * Поля блоков в примитивных массивах, {@link org.main.entity.Block} создаются по запросу
+     */
+    COLUMNAR
+}
@@ -0,0 +1,261 @@
+package org.main.storage;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Колоночное хранилище: поля фиксированной длины лежат в примитивных массивах, {@code data} - в общем
+ * байтовом буфере (арене). На блок приходится 101 байт полей плюс длина данных и ни одного объекта
+ * ({@code BlockStoreBenchmark.retainedMemory}: 137 байт на блок с 30 байтами данных вместе с запасом массивов),
+ * {@link Block} создается только при обращении к нему.
+ * <p>
+ * Хеши, которые не являются SHA-256 (например, {@code prevHash} генезиса), хранятся отдельно в словаре.
+ * <p>
+ * Снимки ссылаются на текущие массивы. Добавление пишет только за пределы снимков, а при росте создает
+ * новые массивы. Усечение после выдачи снимка копирует массивы, чтобы не перезаписать видимые снимку слоты.
+ */
+public class ColumnarBlockStore implements BlockStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ARENA_BYTES = 32 * INITIAL_CAPACITY;
+
+    private static final byte PREV_HASH_NULL = 1;
+    private static final byte PREV_HASH_TEXT = 1 << 1;
+    private static final byte HASH_NULL = 1 << 2;
+    private static final byte HASH_TEXT = 1 << 3;
+
+    private Columns columns = new Columns(INITIAL_CAPACITY, INITIAL_ARENA_BYTES, new ConcurrentHashMap<>());
+    /**
+     * Пишется после слотов нового блока, поэтому читатель, увидевший размер, видит и блок
+     */
+    private volatile int size;
+    private volatile boolean shared;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public Block get(int position) {
+        Objects.checkIndex(position, size);
+        return columns.block(position);
+    }
+
+    @Override
+    public void add(@NotNull Block block) {
+        int position = size;
+        byte[] data = block.getData().getBytes(StandardCharsets.UTF_8);
+        int dataStart = columns.dataEnd(position);
+        Validate.isTrue(dataStart + (long) data.length <= Integer.MAX_VALUE, "Block data arena is full");
+        ensureCapacity(position + 1, dataStart + data.length);
+
+        Columns c = columns;
+        c.indexes[position] = block.getIndex();
+        c.timestamps[position] = block.getTimestamp();
+        c.nonces[position] = block.getNonce();
+        c.difficulties[position] = block.getDifficulty();
+        c.flags[position] = (byte) (putHash(c, c.prevHashes, position, prevHashKey(position), block.getPrevBlockHash(), PREV_HASH_NULL, PREV_HASH_TEXT)
+                | putHash(c, c.hashes, position, hashKey(position), block.getBlockHash(), HASH_NULL, HASH_TEXT));
+        System.arraycopy(data, 0, c.arena, dataStart, data.length);
+        c.dataEnds[position] = dataStart + data.length;
+        size = position + 1;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        Validate.inclusiveBetween(0, size, newSize, "New size [%d] is out of chain size [%d]", newSize, size);
+        if (newSize == size) {
+            return;
+        }
+        if (shared) {
+            columns = columns.copy(columns.indexes.length, columns.arena.length, newSize, true);
+            shared = false;
+        } else {
+            columns.textHashes.keySet().removeIf(key -> key >= prevHashKey(newSize));
+        }
+        size = newSize;
+    }
+
+    @NotNull
+    @Override
+    public List<Block> snapshot(int from, int to) {
+        int currentSize = size;
+        Validate.isTrue(0 <= from && from <= to && to <= currentSize,
+                "Range [%d, %d) is out of chain size [%d]", from, to, currentSize);
+        shared = true;
+        return new ColumnsView(columns, from, to);
+    }
+
+    private void ensureCapacity(int blocks, int arenaBytes) {
+        Columns c = columns;
+        int capacity = c.indexes.length;
+        int arenaCapacity = c.arena.length;
+        if (blocks <= capacity && arenaBytes <= arenaCapacity) {
+            return;
+        }
+        while (capacity < blocks) {
+            capacity = capacity + (capacity >> 1);
+        }
+        while (arenaCapacity < arenaBytes) {
+            arenaCapacity = (int) Math.min(Integer.MAX_VALUE, arenaCapacity + (long) (arenaCapacity >> 1));
+        }
+        columns = c.copy(capacity, arenaCapacity, size, false);
+    }
+
+    private static byte putHash(Columns c, long[] words, int position, int key, @Nullable BlockHash hash,
+                                byte nullFlag, byte textFlag) {
+        if (hash == null) {
+            return nullFlag;
+        }
+        if (!hash.isBinary()) {
+            c.textHashes.put(key, hash);
+            return textFlag;
+        }
+        int offset = position * 4;
+        for (int i = 0; i < 4; i++) {
+            words[offset + i] = hash.word(i);
+        }
+        return 0;
+    }
+
+    private static int prevHashKey(int position) {
+        return position * 2;
+    }
+
+    private static int hashKey(int position) {
+        return position * 2 + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarBlockStore{size=" + size + ", arenaBytes=" + columns.dataEnd(size) + "}";
+    }
+
+    private static final class Columns {
+        private final long[] indexes;
+        private final long[] timestamps;
+        private final long[] nonces;
+        private final long[] difficulties;
+        private final long[] prevHashes;
+        private final long[] hashes;
+        private final byte[] flags;
+        private final int[] dataEnds;
+        private final byte[] arena;
+        /**
+         * Хеши-строки по ключу {@code position * 2} для prevHash и {@code position * 2 + 1} для hash
+         */
+        private final Map<Integer, BlockHash> textHashes;
+
+        private Columns(int capacity, int arenaCapacity, Map<Integer, BlockHash> textHashes) {
+            this.indexes = new long[capacity];
+            this.timestamps = new long[capacity];
+            this.nonces = new long[capacity];
+            this.difficulties = new long[capacity];
+            this.prevHashes = new long[capacity * 4];
+            this.hashes = new long[capacity * 4];
+            this.flags = new byte[capacity];
+            this.dataEnds = new int[capacity];
+            this.arena = new byte[arenaCapacity];
+            this.textHashes = textHashes;
+        }
+
+        /**
+         * Копия первых {@code size} блоков. Словарь хешей-строк копируется только при усечении,
+         * при росте добавляемые ключи не видны снимкам
+         */
+        private Columns copy(int capacity, int arenaCapacity, int size, boolean truncated) {
+            Map<Integer, BlockHash> copiedTextHashes = textHashes;
+            if (truncated) {
+                copiedTextHashes = new ConcurrentHashMap<>();
+                for (Map.Entry<Integer, BlockHash> entry : textHashes.entrySet()) {
+                    if (entry.getKey() < prevHashKey(size)) {
+                        copiedTextHashes.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            Columns copy = new Columns(capacity, arenaCapacity, copiedTextHashes);
+            System.arraycopy(indexes, 0, copy.indexes, 0, size);
+            System.arraycopy(timestamps, 0, copy.timestamps, 0, size);
+            System.arraycopy(nonces, 0, copy.nonces, 0, size);
+            System.arraycopy(difficulties, 0, copy.difficulties, 0, size);
+            System.arraycopy(prevHashes, 0, copy.prevHashes, 0, size * 4);
+            System.arraycopy(hashes, 0, copy.hashes, 0, size * 4);
+            System.arraycopy(flags, 0, copy.flags, 0, size);
+            System.arraycopy(dataEnds, 0, copy.dataEnds, 0, size);
+            System.arraycopy(arena, 0, copy.arena, 0, dataEnd(size));
+            return copy;
+        }
+
+        private int dataEnd(int size) {
+            return size == 0 ? 0 : dataEnds[size - 1];
+        }
+
+        private Block block(int position) {
+            byte blockFlags = flags[position];
+            int dataStart = dataEnd(position);
+            String data = new String(arena, dataStart, dataEnds[position] - dataStart, StandardCharsets.UTF_8);
+            return new Block(indexes[position],
+                    hash(prevHashes, position, prevHashKey(position), blockFlags, PREV_HASH_NULL, PREV_HASH_TEXT),
+                    hash(hashes, position, hashKey(position), blockFlags, HASH_NULL, HASH_TEXT),
+                    nonces[position],
+                    data,
+                    timestamps[position],
+                    difficulties[position]);
+        }
+
+        @Nullable
+        private BlockHash hash(long[] words, int position, int key, byte blockFlags, byte nullFlag, byte textFlag) {
+            if ((blockFlags & nullFlag) != 0) {
+                return null;
+            }
+            if ((blockFlags & textFlag) != 0) {
+                return textHashes.get(key);
+            }
+            int offset = position * 4;
+            return BlockHash.of(words[offset], words[offset + 1], words[offset + 2], words[offset + 3]);
+        }
+    }
+
+    private static final class ColumnsView extends AbstractList<Block> implements RandomAccess {
+        private final Columns columns;
+        private final int from;
+        private final int to;
+
+        private ColumnsView(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Block get(int index) {
+            Objects.checkIndex(index, to - from);
+            return columns.block(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<Block> subList(int fromIndex, int toIndex) {
+            Validate.isTrue(0 <= fromIndex && fromIndex <= toIndex && toIndex <= size(),
+                    "Range [%d, %d) is out of snapshot size [%d]", fromIndex, toIndex, size());
+            return new ColumnsView(columns, from + fromIndex, from + toIndex);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.main.storage;
+
+public enum FsyncPolicy {
+    /**
+     * fsync после каждого добавленного блока
+     */
+    ALWAYS,
+    /**
+     * fsync не чаще, чем раз в заданный интервал, и при закрытии сегмента
+     */
+    INTERVAL,
+    /**
+     * fsync только при закрытии сегмента, остальное на усмотрение ОС
+     */
+    NEVER
+}
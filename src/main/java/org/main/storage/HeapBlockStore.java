@@ -0,0 +1,73 @@
+package org.main.storage;
+
+import org.apache.commons.lang3.Validate;
+import org.jetbrains.annotations.NotNull;
+import org.main.entity.Block;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Блоки в массиве объектов. Снимки ссылаются на текущий массив без копирования: добавление пишет только
+ * за пределы снимков, а при росте создает новый массив. Усечение после выдачи снимка копирует массив,
+ * чтобы не перезаписать видимые снимку слоты.
+ */
+public class HeapBlockStore implements BlockStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Block[] elements = new Block[INITIAL_CAPACITY];
+    /**
+     * Пишется после слота нового блока, поэтому читатель, увидевший размер, видит и блок
+     */
+    private volatile int size;
+    private volatile boolean shared;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public Block get(int position) {
+        Objects.checkIndex(position, size);
+        return elements[position];
+    }
+
+    @Override
+    public void add(@NotNull Block block) {
+        int position = size;
+        if (position == elements.length) {
+            elements = Arrays.copyOf(elements, position + (position >> 1));
+        }
+        elements[position] = block;
+        size = position + 1;
+    }
+
+    @Override
+    public void truncate(int newSize) {
+        Validate.inclusiveBetween(0, size, newSize, "New size [%d] is out of chain size [%d]", newSize, size);
+        if (shared) {
+            Block[] copy = new Block[elements.length];
+            System.arraycopy(elements, 0, copy, 0, newSize);
+            elements = copy;
+            shared = false;
+        } else {
+            Arrays.fill(elements, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    @NotNull
+    @Override
+    public List<Block> snapshot(int from, int to) {
+        int currentSize = size;
+        Validate.isTrue(0 <= from && from <= to && to <= currentSize,
+                "Range [%d, %d) is out of chain size [%d]", from, to, currentSize);
+        shared = true;
+        return Collections.unmodifiableList(Arrays.asList(elements).subList(from, to));
+    }
+}
@@ -0,0 +1,17 @@
+package org.main.storage;
+
+public final class StorageConfiguration {
+
+    public static final String STORAGE_DIR_PROPERTY = "storage_dir";
+    public static final String SEGMENT_BYTES_PROPERTY = "storage_segment_bytes";
+    public static final String FSYNC_POLICY_PROPERTY = "storage_fsync";
+    public static final String FSYNC_INTERVAL_MS_PROPERTY = "storage_fsync_interval_ms";
+    public static final String BLOCK_STORE_PROPERTY = "block_store";
+
+    static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final long DEFAULT_FSYNC_INTERVAL_MS = 1000L;
+
+    private StorageConfiguration() {
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.main.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+import org.main.grpc.RpcEntityConverter;
+import org.main.java.grpc.BlockOuterClass;
+import org.main.storage.BlockCodec;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockHashTest {
+
+    private static final String HEX = BlockGenerationUtils.calculateHash("block-hash-test", 42);
+
+    @Test
+    @DisplayName("Should keep SHA-256 hex as 32 raw bytes and restore the same string")
+    void binaryRoundTrip() {
+        BlockHash hash = BlockHash.of(HEX);
+
+        assertTrue(hash.isBinary());
+        assertEquals(BlockHash.LENGTH, hash.toBytes().length);
+        assertEquals(HEX, hash.toString());
+        assertEquals(hash, BlockHash.of(hash.toBytes()));
+        assertEquals(hash.hashCode(), BlockHash.of(hash.toBytes()).hashCode());
+    }
+
+    @Test
+    @DisplayName("Should keep values that are not lowercase SHA-256 hex as text")
+    void legacyText() {
+        for (String value : new String[]{"stub", "hash1", HEX.toUpperCase(), HEX.substring(1) + "z"}) {
+            BlockHash hash = BlockHash.of(value);
+
+            assertFalse(hash.isBinary());
+            assertEquals(value, hash.toString());
+            assertNotEquals(BlockHash.of(HEX), hash);
+        }
+        assertNull(BlockHash.of((String) null));
+    }
+
+    @Test
+    @DisplayName("Should send binary hashes as raw bytes and accept hex strings from old peers")
+    void wireFormat() {
+        Block block = new Block(1, HEX, HEX, 7L, "data");
+
+        BlockOuterClass.Block rpcBlock = RpcEntityConverter.from(block);
+        assertEquals(BlockHash.LENGTH, rpcBlock.getHashRaw().size());
+        assertTrue(rpcBlock.getHash().isEmpty());
+        assertEquals(HEX, RpcEntityConverter.from(rpcBlock).getHash());
+
+        BlockOuterClass.Block legacyBlock = BlockOuterClass.Block.newBuilder()
+                .setIndex(1).setPrevHash(HEX).setHash(HEX).setNonce(7).setData("data").build();
+        Block received = RpcEntityConverter.from(legacyBlock);
+        assertTrue(received.getBlockHash().isBinary());
+        assertEquals(HEX, received.getHash());
+        assertEquals(HEX, received.getPrevHash());
+    }
+
+    @Test
+    @DisplayName("Should encode binary, text and missing hashes in the storage format")
+    void storageFormat() {
+        Block binary = new Block(5, HEX, HEX, 9L, "data", 100L);
+        Block text = new Block(0, null, "hash0", 0L, "genesis", 100L);
+
+        byte[] binaryPayload = BlockCodec.encode(binary);
+        assertTrue(binaryPayload.length < BlockCodec.encode(new Block(5, HEX.toUpperCase(), HEX.toUpperCase(), 9L, "data", 100L)).length);
+
+        Block decodedBinary = BlockCodec.decode(ByteBuffer.wrap(binaryPayload));
+        assertEquals(binary.getHash(), decodedBinary.getHash());
+        assertEquals(binary.getPrevHash(), decodedBinary.getPrevHash());
+        assertEquals(9L, decodedBinary.getNonce());
+
+        Block decodedText = BlockCodec.decode(ByteBuffer.wrap(BlockCodec.encode(text)));
+        assertNull(decodedText.getPrevHash());
+        assertEquals("hash0", decodedText.getHash());
+        assertEquals("genesis", decodedText.getData());
+    }
+}
@@ -0,0 +1,82 @@
+package org.main.grpc;
+
+import io.grpc.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.java.grpc.BlockServiceGrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ParallelRangeFetcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ParallelRangeFetcher fetcher = new ParallelRangeFetcher(executor, 100, 2);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should deliver ranges in order and retry ranges of a dead peer on other peers")
+    void fetchInOrderWithRetries() {
+        BlockServiceGrpc.BlockServiceBlockingStub first = stub("first");
+        BlockServiceGrpc.BlockServiceBlockingStub second = stub("second");
+        BlockServiceGrpc.BlockServiceBlockingStub dead = stub("dead");
+        List<ParallelRangeFetcher.Peer> peers = List.of(
+                new ParallelRangeFetcher.Peer(first, 2000),
+                new ParallelRangeFetcher.Peer(dead, 2000),
+                new ParallelRangeFetcher.Peer(second, 1500));
+        List<Long> received = new ArrayList<>();
+
+        boolean completed = fetcher.fetch(peers, 10, 2000, (stub, from, to) -> {
+            if (stub == dead) {
+                throw new IllegalStateException("peer is down");
+            }
+            Thread.sleep(ThreadLocalRandom.current().nextInt(5)); // ranges complete out of order
+            return LongStream.range(from, to).boxed().toList();
+        }, received::addAll);
+
+        assertTrue(completed);
+        assertEquals(LongStream.range(10, 2000).boxed().toList(), received);
+    }
+
+    @Test
+    @DisplayName("Should stop when a range is not available on any peer and keep the delivered prefix")
+    void fetchFailsWhenRangeIsUnavailable() {
+        BlockServiceGrpc.BlockServiceBlockingStub healthy = stub("healthy");
+        BlockServiceGrpc.BlockServiceBlockingStub dead = stub("dead");
+        List<ParallelRangeFetcher.Peer> peers = List.of(
+                new ParallelRangeFetcher.Peer(healthy, 300),
+                new ParallelRangeFetcher.Peer(dead, 500));
+        List<Long> received = new ArrayList<>();
+
+        boolean completed = fetcher.fetch(peers, 0, 500, (stub, from, to) -> {
+            if (stub == dead) {
+                throw new IllegalStateException("peer is down");
+            }
+            return LongStream.range(from, to).boxed().toList();
+        }, received::addAll);
+
+        assertFalse(completed);
+        assertEquals(LongStream.range(0, 300).boxed().toList(), received);
+    }
+
+    private static BlockServiceGrpc.BlockServiceBlockingStub stub(String authority) {
+        BlockServiceGrpc.BlockServiceBlockingStub stub = mock(BlockServiceGrpc.BlockServiceBlockingStub.class);
+        Channel channel = mock(Channel.class);
+        when(channel.authority()).thenReturn(authority);
+        when(stub.getChannel()).thenReturn(channel);
+        return stub;
+    }
+}
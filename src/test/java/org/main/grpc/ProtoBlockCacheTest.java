@@ -0,0 +1,30 @@
+package org.main.grpc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.entity.Block;
+import org.main.java.grpc.BlockOuterClass;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProtoBlockCacheTest {
+
+    @Test
+    @DisplayName("Should convert a block once and convert again when the block at the index has changed")
+    void getReusesConvertedBlocks() {
+        ProtoBlockCache cache = new ProtoBlockCache(16);
+        Block block = new Block(1, "hash0", "hash1", 1L, "data1");
+
+        BlockOuterClass.Block first = cache.get(block);
+        assertSame(first, cache.get(block));
+        assertEquals(1, cache.hits());
+
+        BlockOuterClass.Block fork = cache.get(new Block(1, "hash0", "fork1", 1L, "fork1"));
+        assertEquals("fork1", fork.getHash());
+
+        cache.onTruncated(1);
+        assertNotSame(fork, cache.get(new Block(1, "hash0", "fork1", 1L, "fork1")));
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+}
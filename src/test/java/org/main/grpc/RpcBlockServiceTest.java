@@ -1,13 +1,18 @@
 package org.main.grpc;
 
+import com.google.protobuf.ByteString;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
 import org.main.grpc.entity.MinedBlockRequest;
 import org.main.java.grpc.BlockOuterClass;
 import org.main.state.BlockChainService;
+import org.mockito.ArgumentCaptor;
 
 import java.util.Collections;
 import java.util.List;
@@ -103,6 +108,8 @@ class RpcBlockServiceTest {
                         .setHash("hash1")
                         .setNonce(1)
                         .setData("data1")
+                        .setTimestamp(expectedBlocks.get(0).getTimestamp())
+                        .setDifficulty(BlockGenerationUtils.INITIAL_DIFFICULTY)
                         .build();
 
         BlockOuterClass.Block expectedRpcBlock2 =
@@ -112,6 +119,8 @@ class RpcBlockServiceTest {
                         .setHash("hash2")
                         .setNonce(2)
                         .setData("data2")
+                        .setTimestamp(expectedBlocks.get(1).getTimestamp())
+                        .setDifficulty(BlockGenerationUtils.INITIAL_DIFFICULTY)
                         .build();
 
         BlockOuterClass.GetBlockChainResponse expectedResponse =
@@ -123,6 +132,28 @@ class RpcBlockServiceTest {
         verify(responseObserver).onCompleted();
     }
 
+    @Test
+    @DisplayName("Should look up a block by its raw hash and return an empty response for an unknown hash")
+    void getBlockByHash() {
+        String hex = "ab".repeat(32);
+        Block block = new Block(7, "cd".repeat(32), hex, 1L, "data");
+        when(blockChainService.getBlockByHash(BlockHash.of(hex))).thenReturn(block);
+        StreamObserver<BlockOuterClass.GetBlockResponse> responseObserver = mock(StreamObserver.class);
+
+        rpcBlockService.getBlockByHash(BlockOuterClass.GetBlockByHashRequest.newBuilder()
+                .setHashRaw(ByteString.copyFrom(BlockHash.of(hex).toBytes()))
+                .build(), responseObserver);
+        rpcBlockService.getBlockByHash(BlockOuterClass.GetBlockByHashRequest.newBuilder()
+                .setHash("unknown")
+                .build(), responseObserver);
+
+        verify(responseObserver).onNext(BlockOuterClass.GetBlockResponse.newBuilder()
+                .setBlock(RpcEntityConverter.from(block))
+                .build());
+        verify(responseObserver).onNext(BlockOuterClass.GetBlockResponse.getDefaultInstance());
+        verify(responseObserver, times(2)).onCompleted();
+    }
+
     @Test
     @DisplayName("Should reject the block when it is invalid")
     void sendBlockWhenBlockIsInvalidThenReject() {
@@ -173,4 +204,83 @@ class RpcBlockServiceTest {
                                                 == BlockOuterClass.ResponseCode.ACCEPTED));
         verify(responseObserver).onCompleted();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should stream the chain in chunks and complete the stream")
+    void streamBlockchainInChunks() {
+        List<Block> blockChain =
+                List.of(
+                        new Block(0, "stub", "hash0", 0L, "data0"),
+                        new Block(1, "hash0", "hash1", 1L, "data1"),
+                        new Block(2, "hash1", "hash2", 2L, "data2"));
+        when(blockChainService.chainSize()).thenReturn(3L);
+        when(blockChainService.getBlockChain(0L, 2L)).thenReturn(blockChain.subList(0, 2));
+        when(blockChainService.getBlockChain(2L, 3L)).thenReturn(blockChain.subList(2, 3));
+
+        BlockOuterClass.GetBlockChainRequest request =
+                BlockOuterClass.GetBlockChainRequest.newBuilder().setFromIndex(0).setChunkSize(2).build();
+        StreamObserver<BlockOuterClass.GetBlockChainResponse> responseObserver =
+                mock(StreamObserver.class);
+
+        rpcBlockService.streamBlockchain(request, responseObserver);
+
+        verify(responseObserver).onNext(argThat(response -> response.getBlockCount() == 2));
+        verify(responseObserver).onNext(argThat(response -> response.getBlockCount() == 1
+                && response.getBlock(0).getIndex() == 2));
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    @DisplayName("Should send the next chunk only when the transport is ready")
+    void streamBlockchainWaitsForReadiness() {
+        when(blockChainService.chainSize()).thenReturn(1L);
+        when(blockChainService.getBlockChain(0L, 1L))
+                .thenReturn(List.of(new Block(0, "stub", "hash0", 0L, "data0")));
+
+        BlockOuterClass.GetBlockChainRequest request =
+                BlockOuterClass.GetBlockChainRequest.newBuilder().setFromIndex(0).build();
+        ServerCallStreamObserver<BlockOuterClass.GetBlockChainResponse> responseObserver =
+                mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(false);
+
+        rpcBlockService.streamBlockchain(request, responseObserver);
+
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        verify(responseObserver, never()).onNext(any());
+
+        when(responseObserver.isReady()).thenReturn(true);
+        onReady.getValue().run();
+
+        verify(responseObserver).onNext(argThat(response -> response.getBlockCount() == 1));
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    @DisplayName("Should stream block headers with the Merkle root instead of data")
+    void getHeaders() {
+        Block block = new Block(0, "stub", "hash0", 5L, "data0", 1234L);
+        when(blockChainService.chainSize()).thenReturn(1L);
+        when(blockChainService.getBlockChain(0L, 1L)).thenReturn(List.of(block));
+
+        BlockOuterClass.GetBlockChainRequest request =
+                BlockOuterClass.GetBlockChainRequest.newBuilder().setFromIndex(0).build();
+        StreamObserver<BlockOuterClass.GetHeadersResponse> responseObserver =
+                mock(StreamObserver.class);
+
+        rpcBlockService.getHeaders(request, responseObserver);
+
+        BlockOuterClass.BlockHeader expectedHeader =
+                BlockOuterClass.BlockHeader.newBuilder()
+                        .setIndex(0)
+                        .setPrevHash("stub")
+                        .setHash("hash0")
+                        .setNonce(5)
+                        .setTimestamp(1234L)
+                        .setMerkleRoot(ByteString.copyFrom(block.getMerkleRoot().toBytes()))
+                        .setDifficulty(BlockGenerationUtils.INITIAL_DIFFICULTY)
+                        .build();
+        verify(responseObserver).onNext(eq(BlockOuterClass.GetHeadersResponse.newBuilder().addHeader(expectedHeader).build()));
+        verify(responseObserver).onCompleted();
+    }
+}
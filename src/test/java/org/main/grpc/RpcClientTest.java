@@ -1,6 +1,9 @@
 package org.main.grpc;
 
 import com.google.protobuf.Empty;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.main.entity.Block;
@@ -8,12 +11,18 @@ import org.main.grpc.entity.GetBlockChainResponse;
 import org.main.grpc.entity.HeartbeatResponse;
 import org.main.grpc.entity.MinedBlockResponse;
 import org.main.grpc.entity.MinedBlockResponseCode;
+import org.main.java.grpc.BlockOuterClass;
 import org.main.java.grpc.BlockServiceGrpc;
+import org.main.metrics.NodeMetrics;
+import org.main.state.BlockChainService;
 import org.mockito.Mockito;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -273,4 +282,171 @@ class RpcClientTest {
                 secondStubAddress,
                 "Expected second stub to have target address 'localhost:5002'");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should return after a majority accepted the block and mark the hung node as FAILED")
+    void sendBlockBroadcastCompletesOnQuorum() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Server fast1 = startServer(() -> {});
+        Server fast2 = startServer(() -> {});
+        Server hung = startServer(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(RpcConfiguration.NODES_AMOUNT_PROPERTY, "4");
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "1", "localhost:" + fast1.getPort());
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "2", "localhost:" + fast2.getPort());
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "3", "localhost:" + hung.getPort());
+            properties.setProperty(RpcConfiguration.RPC_DEADLINE_MS_PROPERTY, "60000");
+            RpcClient rpcClient = new RpcClient("node_0", properties);
+
+            long startNanos = System.nanoTime();
+            List<MinedBlockResponse> responses = rpcClient.sendBlockBroadcast(new Block(0, "prev_hash", "hash", 0L, "data"));
+
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos) < 30, "Broadcast should not wait for the hung node");
+            assertEquals(3, responses.size());
+            assertEquals(2, responses.stream().filter(response -> response.getResponseCode() == MinedBlockResponseCode.ACCEPTED).count());
+            assertEquals(MinedBlockResponseCode.FAILED, responses.get(2).getResponseCode());
+        } finally {
+            release.countDown();
+            fast1.shutdownNow();
+            fast2.shutdownNow();
+            hung.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should announce blocks and request heartbeats over the gossip stream, known blocks are not sent again")
+    void broadcastOverGossipStream() throws Exception {
+        BlockChainService blockChainService = Mockito.mock(BlockChainService.class);
+        Mockito.when(blockChainService.onBlockAnnounced(Mockito.any())).thenReturn(true);
+        Mockito.when(blockChainService.onBlockRequestReceived(Mockito.any())).thenReturn(true);
+        Mockito.when(blockChainService.chainSize()).thenReturn(7L);
+        RpcBlockService rpcBlockService = new RpcBlockService(blockChainService);
+        // only the gossip call is implemented, unary fallbacks would fail
+        Server server = ServerBuilder.forPort(0)
+                .addService(new BlockServiceGrpc.BlockServiceImplBase() {
+                    @Override
+                    public StreamObserver<BlockOuterClass.GossipMessage> gossip(StreamObserver<BlockOuterClass.GossipMessage> responseObserver) {
+                        return rpcBlockService.gossip(responseObserver);
+                    }
+                })
+                .build()
+                .start();
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(RpcConfiguration.NODES_AMOUNT_PROPERTY, "2");
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "1", "localhost:" + server.getPort());
+            properties.setProperty(RpcConfiguration.RPC_DEADLINE_MS_PROPERTY, "10000");
+            RpcClient rpcClient = new RpcClient("node_0", properties);
+
+            List<MinedBlockResponse> accepted = rpcClient.sendBlockBroadcast(new Block(1, "prev_hash", "hash", 0L, "data"));
+            List<MinedBlockResponse> known = rpcClient.sendBlockBroadcast(new Block(1, "prev_hash", "hash", 0L, "data"));
+            Map<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> heartbeats = rpcClient.sendHeartbeatBroadcast();
+
+            assertEquals(MinedBlockResponseCode.ACCEPTED, accepted.get(0).getResponseCode());
+            assertEquals(MinedBlockResponseCode.ACCEPTED, known.get(0).getResponseCode());
+            assertEquals(7L, heartbeats.values().iterator().next().chainLength());
+            Mockito.verify(blockChainService, Mockito.times(1)).onBlockAnnounced(Mockito.any());
+            Mockito.verify(blockChainService, Mockito.times(1)).onBlockRequestReceived(Mockito.any());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should count a peer that already has the block as accepted without sending the body")
+    void sendBlockBroadcastToPeerThatHasBlock() throws Exception {
+        BlockChainService blockChainService = Mockito.mock(BlockChainService.class);
+        Mockito.when(blockChainService.onBlockAnnounced(Mockito.any())).thenReturn(false);
+        RpcBlockService rpcBlockService = new RpcBlockService(blockChainService);
+        Server server = ServerBuilder.forPort(0)
+                .addService(rpcBlockService)
+                .build()
+                .start();
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(RpcConfiguration.NODES_AMOUNT_PROPERTY, "2");
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "1", "localhost:" + server.getPort());
+            properties.setProperty(RpcConfiguration.RPC_DEADLINE_MS_PROPERTY, "10000");
+            RpcClient rpcClient = new RpcClient("node_0", properties);
+
+            List<MinedBlockResponse> responses = rpcClient.sendBlockBroadcast(new Block(1, "prev_hash", "hash", 0L, "data"));
+
+            assertEquals(MinedBlockResponseCode.ACCEPTED, responses.get(0).getResponseCode());
+            Mockito.verify(blockChainService, Mockito.never()).onBlockRequestReceived(Mockito.any());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should reset a gossip stream that doesn't respond and send the next heartbeats as unary calls")
+    void resetStuckGossipStream() throws Exception {
+        Server server = ServerBuilder.forPort(0)
+                .addService(new BlockServiceGrpc.BlockServiceImplBase() {
+                    @Override
+                    public StreamObserver<BlockOuterClass.GossipMessage> gossip(StreamObserver<BlockOuterClass.GossipMessage> responseObserver) {
+                        return new StreamObserver<>() { // accepts messages and never answers
+                            @Override
+                            public void onNext(BlockOuterClass.GossipMessage message) {
+                            }
+
+                            @Override
+                            public void onError(Throwable t) {
+                            }
+
+                            @Override
+                            public void onCompleted() {
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void sendHeartbeat(Empty request, StreamObserver<BlockOuterClass.HeartbeatResponse> responseObserver) {
+                        responseObserver.onNext(BlockOuterClass.HeartbeatResponse.newBuilder().setChainLength(3).build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+        try {
+            Properties properties = new Properties();
+            properties.setProperty(RpcConfiguration.NODES_AMOUNT_PROPERTY, "2");
+            properties.setProperty(RpcConfiguration.NODE_PREFIX_PROPERTY + "1", "localhost:" + server.getPort());
+            properties.setProperty(RpcConfiguration.RPC_DEADLINE_MS_PROPERTY, "300");
+            properties.setProperty(RpcConfiguration.GOSSIP_RETRY_MS_PROPERTY, "60000");
+            RpcClient rpcClient = new RpcClient("node_0", properties);
+
+            rpcClient.sendHeartbeatBroadcast(); // times out on the stream
+            Map<BlockServiceGrpc.BlockServiceBlockingStub, HeartbeatResponse> heartbeats = rpcClient.sendHeartbeatBroadcast();
+
+            assertEquals(3L, heartbeats.values().iterator().next().chainLength());
+            assertEquals(1, NodeMetrics.RPC_CLIENT_ERRORS
+                    .labels("localhost:" + server.getPort(), "gossip.heartbeat", "DEADLINE_EXCEEDED").get());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    private static Server startServer(Runnable beforeResponse) throws IOException {
+        return ServerBuilder.forPort(0)
+                .addService(new BlockServiceGrpc.BlockServiceImplBase() {
+                    @Override
+                    public void sendBlock(BlockOuterClass.MinedBlockRequest request, StreamObserver<BlockOuterClass.MinedBlockResponse> responseObserver) {
+                        beforeResponse.run();
+                        responseObserver.onNext(BlockOuterClass.MinedBlockResponse.newBuilder()
+                                .setCode(BlockOuterClass.ResponseCode.ACCEPTED)
+                                .build());
+                        responseObserver.onCompleted();
+                    }
+                })
+                .build()
+                .start();
+    }
+}
@@ -0,0 +1,64 @@
+package org.main.mempool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MempoolTest {
+
+    @Test
+    @DisplayName("Should accept entries once, reject invalid ones and select the oldest entries that fit into a block")
+    void addAllAndSelect() {
+        Mempool mempool = new Mempool(1024 * 1024);
+
+        SubmitResult result = mempool.addAll(List.of("a", "bb", "a", "", "two\nlines", "ccc"));
+
+        assertEquals(new SubmitResult(3, 1, 2), result);
+        assertEquals(3, mempool.size());
+        assertEquals(List.of("a", "bb"), mempool.select(4)); // "a\nbb"
+        assertEquals(List.of("a", "bb", "ccc"), mempool.select(1024));
+        assertEquals("a\nbb\nccc", BlockPayload.encode(mempool.select(1024)));
+        assertEquals(List.of("a", "bb", "ccc"), BlockPayload.decode("a\nbb\nccc"));
+    }
+
+    @Test
+    @DisplayName("Should reject entries over the memory bound")
+    void memoryBound() {
+        Mempool mempool = new Mempool(2L * (Mempool.ENTRY_OVERHEAD_BYTES + 10));
+
+        SubmitResult result = mempool.addAll(List.of("0123456789", "abcdefghij", "ABCDEFGHIJ"));
+
+        assertEquals(new SubmitResult(2, 0, 1), result);
+        assertEquals(2L * (Mempool.ENTRY_OVERHEAD_BYTES + 10), mempool.bytes());
+    }
+
+    @Test
+    @DisplayName("Should drop included entries and not accept them again")
+    void removeIncluded() {
+        Mempool mempool = new Mempool(1024 * 1024);
+        mempool.addAll(List.of("a", "b", "c"));
+
+        mempool.removeIncluded(List.of("a", "c"));
+
+        assertEquals(List.of("b"), mempool.select(1024));
+        assertEquals(new SubmitResult(0, 1, 0), mempool.addAll(List.of("a")));
+        assertEquals(Mempool.ENTRY_OVERHEAD_BYTES + 1, mempool.bytes());
+    }
+
+    @Test
+    @DisplayName("Should put entries of dropped blocks back in front of the others while they fit into the limit")
+    void restore() {
+        Mempool mempool = new Mempool(4 * (Mempool.ENTRY_OVERHEAD_BYTES + 1));
+        mempool.addAll(List.of("a", "b", "c"));
+        mempool.removeIncluded(List.of("a", "b", "x", "d"));
+
+        mempool.restore(List.of("a", "b", "x", "d", ""));
+
+        assertEquals(List.of("a", "b", "x", "c"), mempool.select(1024));
+        assertEquals(4 * (Mempool.ENTRY_OVERHEAD_BYTES + 1), mempool.bytes());
+        assertEquals(new SubmitResult(0, 1, 1), mempool.addAll(List.of("a", "d")));
+    }
+}
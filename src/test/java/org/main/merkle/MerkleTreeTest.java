@@ -0,0 +1,42 @@
+package org.main.merkle;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.entity.BlockHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleTreeTest {
+
+    @Test
+    @DisplayName("Should compute RFC 6962 roots for an empty tree and a single empty leaf")
+    void rootTestVectors() {
+        assertEquals(BlockHash.of("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"),
+                MerkleTree.root(List.of()));
+        assertEquals(BlockHash.of("6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d"),
+                MerkleTree.root(List.of("")));
+    }
+
+    @Test
+    @DisplayName("Should verify the audit path of every leaf and reject a wrong entry, position or root")
+    void auditPathVerifies() {
+        List<String> entries = new ArrayList<>();
+        for (int size = 1; size <= 33; size++) {
+            entries.add("entry-" + size);
+            BlockHash root = MerkleTree.root(entries);
+            for (int leaf = 0; leaf < size; leaf++) {
+                List<BlockHash> path = MerkleTree.auditPath(entries, leaf);
+                assertTrue(path.size() <= 32 - Integer.numberOfLeadingZeros(size), "size: " + size);
+                assertTrue(MerkleTree.verify(entries.get(leaf), leaf, size, path, root), "size: " + size + ", leaf: " + leaf);
+                assertFalse(MerkleTree.verify("other", leaf, size, path, root));
+                if (size > 1) {
+                    assertFalse(MerkleTree.verify(entries.get(leaf), (leaf + 1) % size, size, path, root));
+                }
+            }
+        }
+        assertFalse(MerkleTree.verify("entry-1", 0, 33, MerkleTree.auditPath(entries, 0), MerkleTree.root(List.of("x"))));
+    }
+}
@@ -0,0 +1,67 @@
+package org.main.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    @DisplayName("Should expose counters, gauges and functions in the Prometheus text format sorted by name")
+    void scrapeCountersAndGauges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricFamily<Counter> errors = registry.counter("rpc_errors_total", "Failed calls", "peer", "code");
+        errors.labels("localhost:8081", "UNAVAILABLE").add(2);
+        errors.labels("a\"b\\c", "CANCELLED").inc();
+        registry.gauge("hash_rate", "Hashes\nper second").labels().set(1.5);
+        registry.gaugeFunction("chain_length", "Blocks", () -> 42);
+
+        assertEquals("""
+                # HELP chain_length Blocks
+                # TYPE chain_length gauge
+                chain_length 42
+                # HELP hash_rate Hashes\\nper second
+                # TYPE hash_rate gauge
+                hash_rate 1.5
+                # HELP rpc_errors_total Failed calls
+                # TYPE rpc_errors_total counter
+                rpc_errors_total{peer="a\\"b\\\\c",code="CANCELLED"} 1
+                rpc_errors_total{peer="localhost:8081",code="UNAVAILABLE"} 2
+                """, registry.scrape());
+    }
+
+    @Test
+    @DisplayName("Should expose cumulative histogram buckets with sum and count")
+    void scrapeHistogram() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("add_seconds", "Add latency", new double[]{0.001, 0.1}).labels();
+        histogram.observeNanos(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.observeNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        histogram.observeNanos(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals("""
+                # HELP add_seconds Add latency
+                # TYPE add_seconds histogram
+                add_seconds_bucket{le="0.001"} 1
+                add_seconds_bucket{le="0.1"} 2
+                add_seconds_bucket{le="+Inf"} 3
+                add_seconds_sum 2.0505
+                add_seconds_count 3
+                """, registry.scrape());
+    }
+
+    @Test
+    @DisplayName("Should return the registered family for the same name and reject a different type or labels")
+    void registerOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricFamily<Counter> counter = registry.counter("blocks_total", "Blocks", "peer");
+
+        assertSame(counter, registry.counter("blocks_total", "Blocks", "peer"));
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("blocks_total", "Blocks", "peer"));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("blocks_total", "Blocks"));
+        assertThrows(IllegalArgumentException.class, () -> counter.labels("a", "b"));
+    }
+}
@@ -0,0 +1,58 @@
+package org.main.mining;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockMinerTest {
+
+    private static final String TEXT = "1stubminer-test-data";
+
+    @Test
+    @DisplayName("Should find a nonce whose hash meets the requirements using several workers")
+    void mineWithSeveralWorkers() {
+        BlockMiner miner = new BlockMiner(4);
+
+        MiningResult result = miner.mine(TEXT, () -> false);
+
+        assertNotNull(result);
+        assertEquals(BlockGenerationUtils.calculateHash(TEXT, result.nonce()), result.hash().toString());
+        assertTrue(BlockGenerationUtils.isHashMeetsRequirements(result.hash().toString()));
+    }
+
+    @Test
+    @DisplayName("Should find the same nonce as sequential search when only one worker is used")
+    void mineWithSingleWorkerFindsFirstNonce() {
+        BlockMiner miner = new BlockMiner(1);
+
+        MiningResult result = miner.mine(TEXT, () -> false);
+
+        assertNotNull(result);
+        for (long nonce = 1; nonce < result.nonce(); nonce++) {
+            assertFalse(BlockGenerationUtils.isHashMeetsRequirements(BlockGenerationUtils.calculateHash(TEXT, nonce)));
+        }
+    }
+
+    @Test
+    @DisplayName("Should stop every worker and return null when the stop condition is met")
+    void mineWhenStopConditionIsMet() {
+        BlockMiner miner = new BlockMiner(4);
+
+        MiningResult result = miner.mine(TEXT, () -> true);
+
+        assertNull(result);
+        List<WorkerStats> stats = miner.getLastStats();
+        assertEquals(4, stats.size());
+        stats.forEach(workerStats -> assertEquals(0, workerStats.attempts()));
+    }
+
+    @Test
+    @DisplayName("Should reject non-positive workers amount")
+    void createWithNonPositiveWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> new BlockMiner(0));
+    }
+}
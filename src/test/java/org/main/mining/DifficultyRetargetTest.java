@@ -0,0 +1,53 @@
+package org.main.mining;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.entity.Block;
+import org.main.entity.BlockHash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DifficultyRetargetTest {
+
+    private final DifficultyRetarget retarget = new DifficultyRetarget(1000, 11);
+
+    @Test
+    @DisplayName("Should keep the parent difficulty between retarget blocks")
+    void inheritsDifficultyInsideWindow() {
+        assertEquals(-1, retarget.windowStart(0));
+        assertEquals(-1, retarget.windowStart(12));
+        assertEquals(11, retarget.windowStart(22));
+
+        assertEquals(5000, retarget.expectedDifficulty(block(12, 0, 5000), null));
+    }
+
+    @Test
+    @DisplayName("Should scale difficulty by the ratio of target to observed window time within the adjustment bound")
+    void retargetsFromTimestamps() {
+        Block windowStart = block(11, 100_000, 5000);
+
+        // 10 intervals of 1000 ms are expected in a window of 11 blocks
+        assertEquals(5000, retarget.expectedDifficulty(block(21, 110_000, 5000), windowStart));
+        assertEquals(10_000, retarget.expectedDifficulty(block(21, 105_000, 5000), windowStart));
+        assertEquals(3333, retarget.expectedDifficulty(block(21, 115_000, 5000), windowStart));
+        assertEquals(20_000, retarget.expectedDifficulty(block(21, 100_000, 5000), windowStart));
+        assertEquals(1250, retarget.expectedDifficulty(block(21, 900_000, 5000), windowStart));
+        assertEquals(1, retarget.expectedDifficulty(block(21, 900_000, 1), windowStart));
+    }
+
+    @Test
+    @DisplayName("Should accept a hash with probability of one to difficulty, matching hex zeros for powers of 16")
+    void meetsDifficulty() {
+        long lastWord = 0x1234_5678_9abd_0000L; // 4 trailing hex zeros, reversed value is 0xbd591e6a2c48
+        assertTrue(PowHasher.meetsDifficulty(lastWord, 1L << 16));
+        assertFalse(PowHasher.meetsDifficulty(lastWord, 1L << 17));
+        assertTrue(PowHasher.meetsDifficulty(lastWord, 88_605));
+        assertFalse(PowHasher.meetsDifficulty(lastWord, 88_606));
+        assertTrue(PowHasher.meetsDifficulty(-1L, 1));
+        assertFalse(PowHasher.meetsDifficulty(-1L, 2));
+    }
+
+    private static Block block(long index, long timestamp, long difficulty) {
+        return new Block(index, BlockHash.of("prev" + index), BlockHash.of("hash" + index), 0L, "data", timestamp, difficulty);
+    }
+}
@@ -0,0 +1,65 @@
+package org.main.mining;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PowHasherTest {
+
+    @Test
+    @DisplayName("Should produce the same hash as calculateHash for any nonce")
+    void hashMatchesCalculateHash() {
+        String prefix = "42" + "0".repeat(64) + "данные";
+        PowHasher hasher = new PowHasher(prefix, BlockGenerationUtils.INITIAL_DIFFICULTY);
+        long[] nonces = {0L, 1L, 9L, 10L, 99L, 100L, 123456789L, -1L, -10L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+        for (long nonce : nonces) {
+            hasher.tryNonce(nonce);
+            assertEquals(BlockGenerationUtils.calculateHash(prefix, nonce), hasher.hashHex(), "nonce: " + nonce);
+        }
+    }
+
+    @Test
+    @DisplayName("Should produce the same hash as calculateHash for prefixes crossing SHA-256 block boundaries")
+    void hashMatchesCalculateHashForAnyPrefixLength() {
+        for (int length = 0; length <= 200; length++) {
+            String prefix = "x".repeat(length);
+            PowHasher hasher = new PowHasher(prefix, BlockGenerationUtils.INITIAL_DIFFICULTY);
+            for (long nonce = 1; nonce <= 1_000_000_000_000L; nonce *= 37) {
+                hasher.tryNonce(nonce);
+                assertEquals(BlockGenerationUtils.calculateHash(prefix, nonce), hasher.hashHex(),
+                        "prefix length: " + length + ", nonce: " + nonce);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should check difficulty on raw bytes the same way as on the hex string")
+    void meetsDifficultyMatchesHexCheck() {
+        Random random = new Random(7);
+        byte[] hash = new byte[PowHasher.HASH_LENGTH];
+        for (int difficulty = 0; difficulty <= 8; difficulty++) {
+            for (int i = 0; i < 2000; i++) {
+                random.nextBytes(hash);
+                int zeroBytes = random.nextInt(5);
+                for (int j = 0; j < zeroBytes; j++) {
+                    hash[hash.length - 1 - j] = 0;
+                }
+                if (random.nextBoolean()) {
+                    hash[hash.length - 1 - zeroBytes] &= (byte) 0xF0;
+                }
+                String hex = Hex.encodeHexString(hash);
+                boolean expected = hex.endsWith("0".repeat(difficulty));
+
+                long lastWord = ByteBuffer.wrap(hash, hash.length - Long.BYTES, Long.BYTES).getLong();
+                assertEquals(expected, PowHasher.meetsDifficulty(lastWord, 1L << (4 * difficulty)), hex + " / " + difficulty);
+            }
+        }
+    }
+}
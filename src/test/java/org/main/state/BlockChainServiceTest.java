@@ -3,21 +3,45 @@ package org.main.state;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.main.BlockGenerationUtils;
 import org.main.entity.Block;
+import org.main.entity.BlockHash;
+import org.main.entity.BlockHeader;
 import org.main.exception.ChainValidationException;
 import org.main.grpc.RpcClient;
+import org.main.grpc.RpcEntityConverter;
+import org.main.grpc.entity.BlockAnnouncement;
 import org.main.grpc.entity.GetBlockChainResponse;
+import org.main.mempool.SubmitResult;
+import org.main.merkle.InclusionProof;
+import org.main.mining.BlockMiner;
+import org.main.storage.BlockLog;
+import org.main.storage.FsyncPolicy;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class BlockChainServiceTest {
 
+    /**
+     * Сложность тестовых блоков, чтобы майнинг в тестах занимал миллисекунды
+     */
+    private static final long TEST_DIFFICULTY = 16;
+    private static final BlockMiner MINER = new BlockMiner(1);
+
     private RpcClient rpcClient;
     private BlockChainService blockChainService;
 
@@ -30,12 +54,7 @@ class BlockChainServiceTest {
     @Test
     @DisplayName("Should return true and add the block when the block is not already mined")
     void onBlockReceivedWhenBlockIsNotMined() {
-        Block block = new Block(1, "prevHash", "hash", 1L, "data");
-        List<Block> receivedBlockchain = new ArrayList<>();
-        receivedBlockchain.add(block);
-
-        when(rpcClient.getBlockchain(anyLong()))
-                .thenReturn(new GetBlockChainResponse(receivedBlockchain));
+        Block block = genesis("data");
 
         boolean result = blockChainService.onBlockReceived(block);
 
@@ -44,12 +63,166 @@ class BlockChainServiceTest {
         assertEquals(block, blockChainService.getBlockChain(0).get(0));
     }
 
+    @Test
+    @DisplayName("Should keep a competing block on a side branch and switch to it once it is heavier")
+    void onBlockReceivedSwitchesToHeavierBranch() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        blockChainService.onBlockReceived(block0);
+        blockChainService.onBlockReceived(block1);
+        blockChainService.onBlockReceived(block2);
+
+        Block fork2 = mine(block1, "fork2");
+        assertFalse(blockChainService.onBlockReceived(fork2));
+        assertEquals(block2, blockChainService.getLastBlock());
+
+        Block fork3 = mine(fork2, "fork3");
+        assertTrue(blockChainService.onBlockReceived(fork3));
+        assertEquals(List.of(block0, block1, fork2, fork3), blockChainService.getBlockChain(0));
+        assertTrue(blockChainService.auditChain(true).isValid());
+
+        // the dropped block is kept on a side branch and the chain can switch back
+        Block block3 = mine(block2, "data3");
+        blockChainService.onBlockReceived(block3);
+        Block block4 = mine(block3, "data4");
+        assertTrue(blockChainService.onBlockReceived(block4));
+        assertEquals(block2, blockChainService.getBlockChain(2, 3).get(0));
+        assertEquals(5, blockChainService.chainSize());
+        assertNull(blockChainService.getBlockByHash(fork2.getBlockHash()));
+        assertEquals(4, blockChainService.getBlockByHash(block4.getBlockHash()).getIndex());
+        assertEquals(block3, blockChainService.getBlockByIndex(3));
+    }
+
+    @Test
+    @DisplayName("Should return entries of blocks dropped by a reorganization to the mempool")
+    void reorganizationRestoresMempoolEntries() {
+        Block block0 = genesis("data0");
+        blockChainService.onBlockReceived(block0);
+        blockChainService.submitEntries(List.of("x"));
+        blockChainService.onBlockReceived(mine(block0, "x\nforeign\nshared"));
+        assertEquals(new SubmitResult(0, 3, 0), blockChainService.submitEntries(List.of("x", "foreign", "shared")));
+
+        Block fork1 = mine(block0, "fork1\nshared");
+        blockChainService.onBlockReceived(fork1);
+        blockChainService.onBlockReceived(mine(fork1, "fork2"));
+
+        assertEquals(3, blockChainService.chainSize());
+        // "shared" is in the new branch and stays confirmed
+        assertEquals(List.of("x", "foreign"), blockChainService.mempool().select(1024));
+        assertEquals(new SubmitResult(0, 3, 0), blockChainService.submitEntries(List.of("x", "foreign", "shared")));
+    }
+
+    @Test
+    @DisplayName("Should reject blocks without proof of work before they reach a side branch or the orphan pool")
+    void onBlockReceivedRejectsBlocksWithoutProofOfWork() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        List.of(block0, block1, block2).forEach(blockChainService::onBlockReceived);
+        BlockHash fakeHash2 = BlockHash.of("0".repeat(62) + "02");
+        BlockHash fakeHash3 = BlockHash.of("0".repeat(62) + "03");
+
+        assertFalse(blockChainService.onBlockReceived(
+                new Block(2, block1.getBlockHash(), fakeHash2, 2L, "fake2", 2L, TEST_DIFFICULTY)));
+        assertFalse(blockChainService.onBlockReceived(
+                new Block(3, fakeHash2, fakeHash3, 3L, "fake3", 3L, TEST_DIFFICULTY)));
+        assertFalse(blockChainService.onBlockReceived(
+                new Block(4, fakeHash3, BlockHash.of("0".repeat(62) + "04"), 4L, "fake4", 4L, TEST_DIFFICULTY)));
+
+        assertEquals(List.of(block0, block1, block2), blockChainService.getBlockChain(0));
+        assertTrue(blockChainService.onBlockReceived(mine(block2, "data3")));
+    }
+
+    @Test
+    @DisplayName("Should publish a new snapshot only when a received block changes the main chain")
+    void onBlockReceivedPublishesOnlyMainChainChanges() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        List.of(block0, block1).forEach(blockChainService::onBlockReceived);
+        ChainSnapshot tip = blockChainService.snapshot();
+
+        blockChainService.onBlockReceived(mine(block0, "fork1")); // side branch
+        blockChainService.onBlockReceived(mine(block2, "data3")); // orphan
+        blockChainService.onBlockReceived(new Block(2, "wrongHash", "hash2", 2L, "data2")); // rejected
+        assertSame(tip, blockChainService.snapshot());
+
+        blockChainService.onBlockReceived(block2);
+        assertNotSame(tip, blockChainService.snapshot());
+        assertEquals(4, blockChainService.chainSize());
+    }
+
+    @Test
+    @DisplayName("Should prove that an entry is included in a block and return null for an unknown entry")
+    void getInclusionProof() {
+        Block block0 = genesis("data0");
+        blockChainService.onBlockReceived(block0);
+        blockChainService.onBlockReceived(mine(block0, "a\nb\nc\nd\ne"));
+
+        InclusionProof proof = blockChainService.getInclusionProof(1, "d");
+
+        assertNotNull(proof);
+        assertEquals(3, proof.leafIndex());
+        assertEquals(5, proof.treeSize());
+        assertEquals(blockChainService.getBlockByIndex(1).getMerkleRoot(), proof.header().merkleRoot());
+        assertTrue(proof.verify());
+        assertTrue(RpcEntityConverter.from(RpcEntityConverter.toInclusionProofResponse(proof), "d").verify());
+        assertFalse(new InclusionProof(proof.header(), "x", 3, 5, proof.auditPath()).verify());
+        assertNull(blockChainService.getInclusionProof(1, "x"));
+        assertNull(blockChainService.getInclusionProof(2, "d"));
+    }
+
+    @Test
+    @DisplayName("Should reject a block whose difficulty differs from the one inherited from its parent")
+    void onBlockReceivedRejectsUnexpectedDifficulty() {
+        Block block0 = genesis("data0");
+        blockChainService.onBlockReceived(block0);
+
+        assertFalse(blockChainService.onBlockReceived(
+                BlockGenerationUtils.generateBlock(block0, "data1", 1L, () -> false, MINER)));
+        assertTrue(blockChainService.onBlockReceived(mine(block0, "data1")));
+        assertEquals(2, blockChainService.chainSize());
+    }
+
+    @Test
+    @DisplayName("Should hold a block until its parent arrives and reject blocks with a broken link")
+    void onBlockReceivedConnectsOrphansAndRejectsInvalidBlocks() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        blockChainService.onBlockReceived(block0);
+
+        assertFalse(blockChainService.onBlockReceived(block2));
+        assertEquals(1, blockChainService.chainSize());
+
+        assertTrue(blockChainService.onBlockReceived(block1));
+        assertEquals(3, blockChainService.chainSize());
+        assertEquals(block2, blockChainService.getLastBlock());
+
+        // index 5 right after the tip with index 2
+        Block block5 = mine(new Block(4, null, block2.getBlockHash(), 0L, "", 0L, TEST_DIFFICULTY), "data5");
+        assertFalse(blockChainService.onBlockReceived(block5));
+        assertEquals(3, blockChainService.chainSize());
+    }
+
+    @Test
+    @DisplayName("Should request the body of an announced block only when the index is not mined yet")
+    void onBlockAnnouncedRequestsBodyOnlyForNewIndex() {
+        Block block0 = genesis("data0");
+        blockChainService.onBlockReceived(block0);
+
+        assertFalse(blockChainService.onBlockAnnounced(new BlockAnnouncement(0, block0.getBlockHash(), "node_1")));
+        assertTrue(blockChainService.onBlockAnnounced(new BlockAnnouncement(1, BlockHash.of("hash1"), "node_1")));
+        verify(rpcClient).markKnown("node_1", block0.getBlockHash());
+    }
+
     @Test
     @DisplayName("Should return false and not add the block when the block is already mined")
     void onBlockReceivedWhenBlockIsAlreadyMined() {
-        Block genesisBlock = new Block(0, "stub", "hash0", 1L, "data0");
-        Block block1 = new Block(1, "hash0", "hash1", 1L, "data1");
-        Block block2 = new Block(2, "hash1", "hash2", 2L, "data2");
+        Block genesisBlock = genesis("data0");
+        Block block1 = mine(genesisBlock, "data1");
+        Block block2 = mine(block1, "data2");
         List<Block> blocks = new ArrayList<>();
         blocks.add(genesisBlock);
         blocks.add(block1);
@@ -82,9 +255,9 @@ class BlockChainServiceTest {
             "Should load the blockchain from the cluster and add the blocks to the local blockchain")
     void loadBlockchainFromClusterAndAddBlocks() { // Prepare the test data
         List<Block> receivedBlocks = new ArrayList<>();
-        receivedBlocks.add(new Block(0, null, "hash0", 0L, "data0"));
-        receivedBlocks.add(new Block(1, "hash0", "hash1", 1L, "data1"));
-        receivedBlocks.add(new Block(2, "hash1", "hash2", 2L, "data2"));
+        receivedBlocks.add(genesis("data0"));
+        receivedBlocks.add(mine(receivedBlocks.get(0), "data1"));
+        receivedBlocks.add(mine(receivedBlocks.get(1), "data2"));
 
         GetBlockChainResponse blockChainResponse = new GetBlockChainResponse(receivedBlocks);
 
@@ -99,6 +272,96 @@ class BlockChainServiceTest {
         assertEquals(receivedBlocks, blockChainService.getBlockChain(0));
     }
 
+    @Test
+    @DisplayName("Should append streamed chunks, reject chunks with a broken link or without proof of work "
+            + "and not fall back to the unary request")
+    void loadBlockchainFromClusterByStream() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        Block forged2 = new Block(2, block1.getBlockHash(), BlockHash.of("0".repeat(64)), 2L, "data2", 2L, TEST_DIFFICULTY);
+        when(rpcClient.streamBlockchain(anyLong(), any())).thenAnswer(invocation -> {
+            Predicate<List<Block>> chunkConsumer = invocation.getArgument(1);
+            return chunkConsumer.test(List.of(block0, block1))
+                    && !chunkConsumer.test(List.of(mine(block0, "wrongLink")))
+                    && !chunkConsumer.test(List.of(forged2, mine(forged2, "data3")));
+        });
+
+        blockChainService.loadBlockchainFromCluster(0);
+
+        assertEquals(List.of(block0, block1), blockChainService.getBlockChain(0));
+        assertTrue(blockChainService.onBlockReceived(block2));
+        verify(rpcClient, never()).getBlockchain(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should fetch bodies only for headers that link and follow the difficulty schedule")
+    void loadBlockchainFromClusterHeadersFirst() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block offSchedule = Objects.requireNonNull(
+                BlockGenerationUtils.generateBlock(block1, "data2", 2 * TEST_DIFFICULTY, () -> false, MINER));
+        assertHeadersFirstFetches(List.of(block0, block1), BlockHeader.of(offSchedule));
+    }
+
+    @Test
+    @DisplayName("Should not fetch bodies for a header whose hash meets the difficulty but doesn't match its fields")
+    void loadBlockchainFromClusterRejectsForgedHeader() {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        BlockHeader header2 = BlockHeader.of(mine(block1, "data2"));
+        BlockHeader forged = new BlockHeader(header2.index(), header2.prevHash(), header2.hash(), header2.nonce(),
+                header2.timestamp() + 1, header2.merkleRoot(), header2.difficulty());
+        assertHeadersFirstFetches(List.of(block0, block1), forged);
+    }
+
+    @Test
+    @DisplayName("Should switch to the heavier chain of the cluster when it forks below the local tip")
+    void loadBlockchainFromClusterFindsForkPoint() {
+        Block block0 = genesis("data0");
+        Block local1 = mine(block0, "local1");
+        Block local2 = mine(local1, "local2");
+        Block local3 = mine(local2, "local3");
+        List.of(block0, local1, local2, local3).forEach(blockChainService::onBlockReceived);
+        List<Block> cluster = new ArrayList<>(List.of(block0));
+        for (int i = 1; i <= 4; i++) {
+            cluster.add(mine(cluster.get(i - 1), "cluster" + i));
+        }
+        when(rpcClient.getHeaders(anyLong())).thenAnswer(invocation -> {
+            int fromIndex = Math.toIntExact(invocation.<Long>getArgument(0));
+            return cluster.subList(fromIndex, cluster.size()).stream().map(BlockHeader::of).toList();
+        });
+        when(rpcClient.fetchBodies(any(), any())).thenAnswer(invocation -> {
+            List<BlockHeader> requested = invocation.getArgument(0);
+            Predicate<List<Block>> bodyConsumer = invocation.getArgument(1);
+            int fromIndex = Math.toIntExact(requested.get(0).index());
+            return bodyConsumer.test(cluster.subList(fromIndex, fromIndex + requested.size()));
+        });
+
+        blockChainService.loadBlockchainFromCluster(4);
+
+        assertEquals(cluster, blockChainService.getBlockChain(0));
+        verify(rpcClient).getHeaders(1);
+        verify(rpcClient, never()).getBlockchain(anyLong());
+    }
+
+    private void assertHeadersFirstFetches(List<Block> bodies, BlockHeader rejected) {
+        List<BlockHeader> headers = new ArrayList<>(bodies.stream().map(BlockHeader::of).toList());
+        headers.add(rejected);
+        when(rpcClient.getHeaders(anyLong())).thenReturn(headers);
+        when(rpcClient.fetchBodies(any(), any())).thenAnswer(invocation -> {
+            List<BlockHeader> requested = invocation.getArgument(0);
+            Predicate<List<Block>> bodyConsumer = invocation.getArgument(1);
+            assertEquals(bodies.size(), requested.size());
+            return bodyConsumer.test(bodies);
+        });
+
+        blockChainService.loadBlockchainFromCluster(0);
+
+        assertEquals(bodies.size(), blockChainService.chainSize());
+        verify(rpcClient, never()).getBlockchain(anyLong());
+    }
+
     @Test
     @DisplayName(
             "Should validate the chains without throwing an exception when the chains are valid")
@@ -167,4 +430,102 @@ class BlockChainServiceTest {
 
         assertThrows(ChainValidationException.class, blockChainService::validateChains);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should reject a block that does not link to the tip and keep the chain unchanged")
+    void addWhenBlockDoesNotLinkToTipThenThrowException() throws ChainValidationException {
+        blockChainService.add(new Block(0, "stub", "hash0", 0L, "data0"));
+        blockChainService.add(new Block(1, "hash0", "hash1", 1L, "data1"));
+
+        assertThrows(ChainValidationException.class,
+                () -> blockChainService.add(new Block(2, "wrongHash", "hash2", 2L, "data2")));
+        assertThrows(ChainValidationException.class,
+                () -> blockChainService.add(new Block(3, "hash1", "hash3", 3L, "data3")));
+        assertEquals(2, blockChainService.chainSize());
+    }
+
+    @Test
+    @DisplayName("Should validate blocks added without validation before appending a new block")
+    void addWhenPendingBlocksAreInvalidThenThrowException() {
+        blockChainService.addFailSafe(new Block(0, "stub", "hash0", 0L, "data0"));
+        blockChainService.addFailSafe(new Block(1, "wrongHash", "hash1", 1L, "data1"));
+
+        assertThrows(ChainValidationException.class,
+                () -> blockChainService.add(new Block(2, "hash1", "hash2", 2L, "data2")));
+        assertEquals(1, blockChainService.auditChain(false).firstInvalidIndex());
+    }
+
+    @Test
+    @DisplayName("Should append blocks after a truncated tip")
+    void addAfterTruncate() throws ChainValidationException {
+        blockChainService.add(new Block(0, "stub", "hash0", 0L, "data0"));
+        blockChainService.add(new Block(1, "hash0", "hash1", 1L, "data1"));
+
+        blockChainService.truncate(1);
+
+        assertTrue(blockChainService.add(new Block(1, "hash0", "otherHash1", 1L, "other1")));
+        assertTrue(blockChainService.auditChain(false).isValid());
+        assertEquals(2, blockChainService.chainSize());
+    }
+
+    @Test
+    @DisplayName("Should replay the chain from local storage and drop blocks after a broken link")
+    void replayFromLocalStorage(@TempDir Path directory) throws Exception {
+        try (BlockLog blockLog = new BlockLog(directory, 1024, FsyncPolicy.NEVER, 0)) {
+            BlockChainService service = new BlockChainService(false, rpcClient, new Properties(), blockLog);
+            service.add(new Block(0, "stub", "hash0", 0L, "data0"));
+            service.add(new Block(1, "hash0", "hash1", 1L, "data1"));
+            service.add(new Block(2, "hash1", "hash2", 2L, "data2"));
+            blockLog.append(new Block(3, "broken", "hash3", 3L, "data3"));
+        }
+
+        try (BlockLog blockLog = new BlockLog(directory, 1024, FsyncPolicy.NEVER, 0)) {
+            BlockChainService service = new BlockChainService(true, rpcClient, new Properties(), blockLog);
+
+            assertEquals(3, service.chainSize());
+            assertEquals("hash2", service.getLastBlock().getHash());
+            assertEquals(3, blockLog.size());
+            assertTrue(service.add(new Block(3, "hash2", "hash3", 3L, "data3")));
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop blocks that fail the startup audit and sync them again from the cluster")
+    void syncAndAuditReplacesInvalidBlocks(@TempDir Path directory) throws Exception {
+        Block block0 = genesis("data0");
+        Block block1 = mine(block0, "data1");
+        Block block2 = mine(block1, "data2");
+        try (BlockLog blockLog = new BlockLog(directory, 1024, FsyncPolicy.NEVER, 0)) {
+            BlockChainService service = new BlockChainService(false, rpcClient, new Properties(), blockLog);
+            service.add(block0);
+            service.add(block1);
+            service.add(new Block(2, block1.getBlockHash(), BlockHash.of("0".repeat(64)), 2L, "data2", 2L, TEST_DIFFICULTY));
+        }
+        when(rpcClient.getBlockchain(anyLong())).thenAnswer(invocation -> invocation.getArgument(0, Long.class) == 2L
+                ? new GetBlockChainResponse(List.of(block2))
+                : GetBlockChainResponse.EMPTY);
+
+        try (BlockLog blockLog = new BlockLog(directory, 1024, FsyncPolicy.NEVER, 0)) {
+            BlockChainService service = new BlockChainService(false, rpcClient, new Properties(), blockLog);
+            assertEquals(3, service.chainSize()); // replay checks links only
+
+            service.syncAndAudit();
+
+            assertEquals(List.of(block0.getHash(), block1.getHash(), block2.getHash()),
+                    service.getBlockChain(0).stream().map(Block::getHash).toList());
+            assertTrue(service.auditChain(true).isValid());
+            assertEquals(3, blockLog.size());
+        }
+    }
+
+    private static Block genesis(String data) {
+        return mine(new Block(-1, null, BlockHash.of(BlockGenerationUtils.GENESIS_BLOCK_PREV_HASH), 0L, "", 0L, TEST_DIFFICULTY), data);
+    }
+
+    /**
+     * Блок с настоящим доказательством работы и сложностью родителя
+     */
+    private static Block mine(Block parent, String data) {
+        return Objects.requireNonNull(BlockGenerationUtils.generateBlock(parent, data, parent.getDifficulty(), () -> false, MINER));
+    }
+}
@@ -0,0 +1,72 @@
+package org.main.state;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+import org.main.entity.Block;
+import org.main.mining.BlockMiner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChainAuditorTest {
+
+    private final ChainAuditor chainAuditor = new ChainAuditor(ForkJoinPool.commonPool());
+
+    @Test
+    @DisplayName("Should report a long chain with valid links as valid")
+    void auditValidChain() {
+        List<Block> blocks = linkedChain(50_000);
+
+        AuditResult result = chainAuditor.audit(blocks, false);
+
+        assertTrue(result.isValid());
+        assertEquals(50_000, result.blocksChecked());
+        assertTrue(result.blocksPerSecond() > 0);
+    }
+
+    @Test
+    @DisplayName("Should report the first invalid index when several ranges contain broken links")
+    void auditReportsFirstInvalidIndex() {
+        List<Block> blocks = linkedChain(50_000);
+        blocks.set(40_000, new Block(40_000, "broken", "hash40000", 0L, "data"));
+        blocks.set(12_345, new Block(12_345, "broken", "hash12345", 0L, "data"));
+        blocks.set(30_000, new Block(30_001, "hash29999", "hash30000", 0L, "data"));
+
+        AuditResult result = chainAuditor.audit(blocks, false);
+
+        assertFalse(result.isValid());
+        assertEquals(12_345, result.firstInvalidIndex());
+    }
+
+    @Test
+    @DisplayName("Should recompute proof-of-work and reject blocks with tampered data")
+    void auditChecksProofOfWork() {
+        BlockMiner miner = new BlockMiner(Runtime.getRuntime().availableProcessors());
+        Block genesis = BlockGenerationUtils.generateGenesis(miner);
+        Block block = BlockGenerationUtils.generateBlock(genesis, () -> false, miner);
+        assertNotNull(block);
+        Block tampered = new Block(block.getIndex(), block.getPrevHash(), block.getHash(), block.getNonce(), "tampered");
+
+        assertTrue(chainAuditor.audit(List.of(genesis, block), true).isValid());
+        assertEquals(1, chainAuditor.audit(List.of(genesis, tampered), true).firstInvalidIndex());
+        assertTrue(chainAuditor.audit(List.of(genesis, tampered), false).isValid());
+    }
+
+    @Test
+    @DisplayName("Should report an empty chain as valid")
+    void auditEmptyChain() {
+        assertTrue(chainAuditor.audit(List.of(), true).isValid());
+    }
+
+    private static List<Block> linkedChain(int length) {
+        List<Block> blocks = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            blocks.add(new Block(i, "hash" + (i - 1), "hash" + i, (long) i, "data" + i));
+        }
+        return blocks;
+    }
+}
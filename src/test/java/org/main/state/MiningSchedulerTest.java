@@ -0,0 +1,61 @@
+package org.main.state;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.entity.Block;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MiningSchedulerTest {
+
+    private final AtomicReference<ChainSnapshot> chain = new AtomicReference<>(ChainSnapshot.EMPTY);
+
+    @Test
+    @DisplayName("Should return the tip right away without a delay and wake up as soon as an empty chain gets a block")
+    void awaitTipWithoutDelay() throws Exception {
+        MiningScheduler scheduler = new MiningScheduler(chain::get, 0, 0);
+        CompletableFuture<ChainSnapshot> waiting = CompletableFuture.supplyAsync(() -> await(scheduler));
+
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        ChainSnapshot tip = publish(scheduler, 0);
+
+        assertSame(tip, waiting.get(5, TimeUnit.SECONDS));
+        assertSame(tip, scheduler.awaitTip());
+    }
+
+    @Test
+    @DisplayName("Should restart the pause when the tip changes and return the newest tip")
+    void awaitTipRestartsDelayOnTipChange() throws Exception {
+        MiningScheduler scheduler = new MiningScheduler(chain::get, 500, 500);
+        publish(scheduler, 0);
+        long startNanos = System.nanoTime();
+        CompletableFuture<ChainSnapshot> waiting = CompletableFuture.supplyAsync(() -> await(scheduler));
+
+        Thread.sleep(300);
+        ChainSnapshot newTip = publish(scheduler, 1);
+
+        assertSame(newTip, waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(800));
+    }
+
+    private ChainSnapshot publish(MiningScheduler scheduler, long index) {
+        ChainSnapshot snapshot = new ChainSnapshot(List.of(new Block(index, "prev" + index, "hash" + index, 0L, "data")));
+        chain.set(snapshot);
+        scheduler.onPublished();
+        return snapshot;
+    }
+
+    private static ChainSnapshot await(MiningScheduler scheduler) {
+        try {
+            return scheduler.awaitTip();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
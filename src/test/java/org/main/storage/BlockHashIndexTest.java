@@ -0,0 +1,56 @@
+package org.main.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+import org.main.entity.BlockHash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockHashIndexTest {
+
+    @Test
+    @DisplayName("Should find positions of binary and text hashes after growth and removal of a tail")
+    void putGetRemove() {
+        BlockHashIndex index = new BlockHashIndex();
+        for (int i = 0; i < 5000; i++) {
+            index.put(hash(i), i);
+        }
+        index.put(BlockHash.of("legacy"), 5000);
+
+        for (int i = 4000; i < 5000; i++) {
+            index.remove(hash(i));
+        }
+        index.remove(BlockHash.of("legacy"));
+
+        assertEquals(4000, index.size());
+        for (int i = 0; i < 4000; i++) {
+            assertEquals(i, index.get(hash(i)));
+        }
+        assertEquals(BlockHashIndex.NOT_FOUND, index.get(hash(4500)));
+        assertEquals(BlockHashIndex.NOT_FOUND, index.get(BlockHash.of("legacy")));
+
+        index.put(hash(4500), 4000);
+        assertEquals(4000, index.get(hash(4500)));
+    }
+
+    @Test
+    @DisplayName("Should keep colliding entries reachable after one of them is removed")
+    void removeShiftsCollidingEntries() {
+        BlockHashIndex index = new BlockHashIndex();
+        // same first word, so every key starts probing from the same slot
+        for (int i = 0; i < 10; i++) {
+            index.put(BlockHash.of(42L, i, 0L, 0L), i);
+        }
+
+        index.remove(BlockHash.of(42L, 3L, 0L, 0L));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i == 3 ? BlockHashIndex.NOT_FOUND : i, index.get(BlockHash.of(42L, i, 0L, 0L)));
+        }
+    }
+
+    private static BlockHash hash(int i) {
+        return BlockHash.of(BlockGenerationUtils.calculateHash("index", i));
+    }
+}
@@ -0,0 +1,154 @@
+package org.main.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.main.entity.Block;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should read appended blocks back after the log is reopened")
+    void appendAndReopen() throws IOException {
+        try (BlockLog blockLog = new BlockLog(directory, 1024 * 1024, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 0; i < 10; i++) {
+                blockLog.append(block(i));
+            }
+            assertEquals(10, blockLog.size());
+            assertBlockEquals(block(3), blockLog.read(3));
+        }
+
+        try (BlockLog blockLog = new BlockLog(directory, 1024 * 1024, FsyncPolicy.ALWAYS, 0)) {
+            List<Block> blocks = blockLog.readAll();
+            assertEquals(10, blocks.size());
+            for (int i = 0; i < 10; i++) {
+                assertBlockEquals(block(i), blocks.get(i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should roll over to new segments and read blocks from every segment")
+    void appendAcrossSegments() throws IOException {
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.NEVER, 0)) {
+            for (int i = 0; i < 50; i++) {
+                blockLog.append(block(i));
+            }
+            assertTrue(segmentFiles().size() > 1);
+            for (int i = 0; i < 50; i++) {
+                assertBlockEquals(block(i), blockLog.read(i));
+            }
+        }
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.NEVER, 0)) {
+            assertEquals(50, blockLog.size());
+            assertBlockEquals(block(49), blockLog.read(49));
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop a torn record at the tail when the log is reopened")
+    void reopenWithTornTail() throws IOException {
+        try (BlockLog blockLog = new BlockLog(directory, 1024 * 1024, FsyncPolicy.INTERVAL, 1000)) {
+            for (int i = 0; i < 5; i++) {
+                blockLog.append(block(i));
+            }
+        }
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2, 3}));
+        }
+
+        try (BlockLog blockLog = new BlockLog(directory, 1024 * 1024, FsyncPolicy.INTERVAL, 1000)) {
+            assertEquals(5, blockLog.size());
+            blockLog.append(block(5));
+            assertBlockEquals(block(5), blockLog.read(5));
+        }
+        try (BlockLog blockLog = new BlockLog(directory, 1024 * 1024, FsyncPolicy.INTERVAL, 1000)) {
+            assertEquals(6, blockLog.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop segments after a corrupted middle segment and reopen the log again")
+    void reopenWithCorruptedMiddleSegment() throws IOException {
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.NEVER, 0)) {
+            for (int i = 0; i < 30; i++) {
+                blockLog.append(block(i));
+            }
+        }
+        List<Path> segments = segmentFiles();
+        assertTrue(segments.size() > 2);
+        long firstSegmentSize = Long.parseLong(segments.get(1).getFileName().toString().replace(".log", ""));
+        try (FileChannel channel = FileChannel.open(segments.get(1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 8); // first payload byte, the crc doesn't match
+        }
+
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.NEVER, 0)) {
+            assertEquals(firstSegmentSize, blockLog.size());
+            assertEquals(2, segmentFiles().size());
+            for (long i = firstSegmentSize; i < 30; i++) {
+                blockLog.append(block((int) i));
+            }
+        }
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.NEVER, 0)) {
+            assertEquals(30, blockLog.size());
+            assertBlockEquals(block(29), blockLog.read(29));
+        }
+    }
+
+    @Test
+    @DisplayName("Should truncate blocks across segments and append after the new tail")
+    void truncateAndAppend() throws IOException {
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.ALWAYS, 0)) {
+            for (int i = 0; i < 30; i++) {
+                blockLog.append(block(i));
+            }
+            blockLog.truncate(7);
+            assertEquals(7, blockLog.size());
+
+            Block replacement = new Block(7, "hash6", "other7", 7L, "other data", 7L);
+            blockLog.append(replacement);
+            assertBlockEquals(replacement, blockLog.read(7));
+        }
+        try (BlockLog blockLog = new BlockLog(directory, 256, FsyncPolicy.ALWAYS, 0)) {
+            assertEquals(8, blockLog.size());
+            assertEquals("other7", blockLog.read(7).getHash());
+            blockLog.truncate(0);
+            assertEquals(0, blockLog.size());
+        }
+        assertTrue(segmentFiles().isEmpty());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static Block block(int index) {
+        return new Block(index, index == 0 ? null : "hash" + (index - 1), "hash" + index, (long) index, "data" + index, 1000L + index);
+    }
+
+    private static void assertBlockEquals(Block expected, Block actual) {
+        assertEquals(expected.getIndex(), actual.getIndex());
+        assertEquals(expected.getPrevHash(), actual.getPrevHash());
+        assertEquals(expected.getHash(), actual.getHash());
+        assertEquals(expected.getNonce(), actual.getNonce());
+        assertEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+    }
+}
@@ -0,0 +1,72 @@
+package org.main.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.BlockGenerationUtils;
+import org.main.entity.Block;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarBlockStoreTest {
+
+    @Test
+    @DisplayName("Should materialize the same blocks that were added, with binary, text and missing hashes")
+    void addAndGet() {
+        ColumnarBlockStore store = new ColumnarBlockStore();
+        for (int i = 0; i < 5000; i++) {
+            store.add(block(i));
+        }
+        store.add(new Block(5000, null, "legacy-hash", 0L, "данные", 1L));
+
+        assertEquals(5001, store.size());
+        for (int i = 0; i < 5000; i++) {
+            assertBlockEquals(block(i), store.get(i));
+        }
+        Block legacy = store.get(5000);
+        assertNull(legacy.getPrevHash());
+        assertEquals("legacy-hash", legacy.getHash());
+        assertEquals("данные", legacy.getData());
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(5001));
+    }
+
+    @Test
+    @DisplayName("Should keep a snapshot unchanged after the store is truncated and appended again")
+    void snapshotSurvivesTruncate() {
+        ColumnarBlockStore store = new ColumnarBlockStore();
+        for (int i = 0; i < 100; i++) {
+            store.add(block(i));
+        }
+        List<Block> snapshot = store.snapshot(0, 100);
+
+        store.truncate(50);
+        for (int i = 50; i < 2000; i++) {
+            store.add(new Block(i, "other" + i, "other" + i, 0L, "other data", 0L));
+        }
+
+        assertEquals(100, snapshot.size());
+        assertBlockEquals(block(0), snapshot.get(0));
+        assertBlockEquals(block(99), snapshot.get(99));
+        assertEquals("other50", store.get(50).getHash());
+        assertBlockEquals(block(49), store.get(49));
+    }
+
+    private static Block block(int index) {
+        String prevHash = index == 0 ? BlockGenerationUtils.GENESIS_BLOCK_PREV_HASH : hash(index - 1);
+        return new Block(index, prevHash, hash(index), index * 31L, "data" + index, 1000L + index);
+    }
+
+    private static String hash(int index) {
+        return BlockGenerationUtils.calculateHash("columnar", index);
+    }
+
+    private static void assertBlockEquals(Block expected, Block actual) {
+        assertEquals(expected.getIndex(), actual.getIndex());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getNonce(), actual.getNonce());
+        assertEquals(expected.getPrevHash(), actual.getPrevHash());
+        assertEquals(expected.getHash(), actual.getHash());
+        assertEquals(expected.getData(), actual.getData());
+    }
+}
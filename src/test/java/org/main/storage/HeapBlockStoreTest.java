@@ -0,0 +1,41 @@
+package org.main.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.main.entity.Block;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeapBlockStoreTest {
+
+    @Test
+    @DisplayName("Should keep a snapshot unchanged after the store grows, is truncated and appended again")
+    void snapshotSurvivesGrowthAndTruncate() {
+        HeapBlockStore store = new HeapBlockStore();
+        for (int i = 0; i < 100; i++) {
+            store.add(block(i, "hash"));
+        }
+        List<Block> snapshot = store.snapshot(0, 100);
+
+        for (int i = 100; i < 3000; i++) {
+            store.add(block(i, "hash"));
+        }
+        store.truncate(50);
+        for (int i = 50; i < 200; i++) {
+            store.add(block(i, "other"));
+        }
+
+        assertEquals(100, snapshot.size());
+        assertEquals("hash99", snapshot.get(99).getHash());
+        assertEquals("other50", store.get(50).getHash());
+        assertEquals(200, store.size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.set(0, block(0, "other")));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(200));
+    }
+
+    private static Block block(int index, String hashPrefix) {
+        return new Block(index, hashPrefix + (index - 1), hashPrefix + index, 0L, "data" + index, 0L);
+    }
+}